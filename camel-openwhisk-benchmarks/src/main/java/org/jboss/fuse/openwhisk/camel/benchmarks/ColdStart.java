@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.fuse.openwhisk.camel.core.json.Utf8JsonReader;
+
+/**
+ * Measures the cold start of the runtime end to end.
+ *
+ * Each run forks a JVM on the shaded <code>camel-openwhisk-core</code> jar, optionally with the
+ * AppCDS archive built the way the <code>docker/Dockerfile</code> does, and drives it over local HTTP
+ * like the invoker: it waits for the port to accept connections, initializes the action and runs it
+ * twice.  The client side phases are reported along with the startup timeline of the runtime, as a
+ * distribution over the runs, for each Camel context.  The runs of the different contexts are
+ * interleaved so that they share the same machine noise.
+ *
+ * <pre>
+ * java -cp camel-openwhisk-benchmarks/target/benchmarks.jar org.jboss.fuse.openwhisk.camel.benchmarks.ColdStart \
+ *   [--runtime &lt;core jar&gt;] [--action &lt;action jar&gt;] [--main &lt;main class&gt;] [--payload &lt;json&gt;]
+ *   [--runs &lt;count&gt;] [--context fast,default] [--cds &lt;archive&gt;] [--jvm &lt;option&gt;]...
+ * </pre>
+ */
+public final class ColdStart {
+
+    static final String SPAWN_TO_LISTEN = "spawnToListen";
+    static final String INIT = "init";
+    static final String FIRST_RUN = "firstRun";
+    static final String TIME_TO_FIRST_RESPONSE = "timeToFirstResponse";
+    static final String SECOND_RUN = "secondRun";
+
+    private static final String RUNTIME_MAIN = "org.jboss.fuse.openwhisk.camel.core.CamelRuntime";
+    private static final long START_TIMEOUT = TimeUnit.SECONDS.toNanos(60);
+
+    private Path runtime;
+    private Path action;
+    private String main = "org.jboss.fuse.openwhisk.camel.example.SimpleCamelFunction";
+    private String payload = "{\"message\":\"foo@bar@baz\"}";
+    private int runs = 10;
+    private List<String> contexts = Arrays.asList("fast", "default");
+    private Path cds;
+    private final List<String> jvmOptions = new ArrayList<>();
+    private final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+    public static void main(String[] args) throws Exception {
+        ColdStart coldStart = new ColdStart();
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            if (value == null) {
+                usage("Missing value for " + args[i]);
+            }
+            switch (args[i++]) {
+                case "--runtime": coldStart.runtime = Paths.get(value); break;
+                case "--action": coldStart.action = Paths.get(value); break;
+                case "--main": coldStart.main = value; break;
+                case "--payload": coldStart.payload = value; break;
+                case "--runs": coldStart.runs = Integer.parseInt(value); break;
+                case "--context": coldStart.contexts = Arrays.asList(value.split(",")); break;
+                case "--cds": coldStart.cds = Paths.get(value); break;
+                case "--jvm": coldStart.jvmOptions.add(value); break;
+                default: usage("Unknown option " + args[i - 1]);
+            }
+        }
+        if (coldStart.runtime == null) {
+            coldStart.runtime = find("camel-openwhisk-core");
+        }
+        if (coldStart.action == null) {
+            coldStart.action = find("camel-openwhisk-example");
+        }
+        coldStart.run();
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: ColdStart [--runtime <core jar>] [--action <action jar>] [--main <main class>]"
+                + " [--payload <json>] [--runs <count>] [--context fast,default] [--cds <archive>] [--jvm <option>]...");
+        System.exit(1);
+    }
+
+    /**
+     * Looks up the jar built by the given module, from the root of the project or one of its modules
+     */
+    private static Path find(String module) throws IOException {
+        for (String dir : new String[] { module + "/target", "../" + module + "/target" }) {
+            Path target = Paths.get(dir);
+            if (Files.isDirectory(target)) {
+                try (DirectoryStream<Path> jars = Files.newDirectoryStream(target, module + "-*.jar")) {
+                    for (Path jar : jars) {
+                        String name = jar.getFileName().toString();
+                        if (!name.endsWith("-sources.jar") && !name.endsWith("-javadoc.jar")) {
+                            return jar;
+                        }
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("Unable to find the " + module + " jar, build the project or use the options");
+    }
+
+    private void run() throws Exception {
+        if (cds != null && !Files.exists(cds)) {
+            dumpArchive();
+        }
+        String init = "{\"value\":{\"main\":\"" + main + "\",\"binary\":true,\"code\":\""
+                + Base64.getEncoder().encodeToString(Files.readAllBytes(action)) + "\"}}";
+        String run = "{\"value\":" + payload + ",\"activation_id\":\"coldstart\"}";
+
+        Map<String, Map<String, List<Double>>> results = new LinkedHashMap<>();
+        for (String context : contexts) {
+            results.put(context, new LinkedHashMap<String, List<Double>>());
+        }
+        for (int i = 0; i < runs; i++) {
+            for (String context : contexts) {
+                Map<String, Double> phases = coldStart(context, init, run);
+                Map<String, List<Double>> values = results.get(context);
+                for (Map.Entry<String, Double> phase : phases.entrySet()) {
+                    List<Double> list = values.get(phase.getKey());
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        values.put(phase.getKey(), list);
+                    }
+                    list.add(phase.getValue());
+                }
+            }
+        }
+
+        System.out.println("Runtime: " + runtime + (cds != null ? " with " + cds : ""));
+        System.out.println("Action:  " + action + " (" + main + ")");
+        System.out.println("JVM:     " + java + " " + System.getProperty("java.version") + " " + jvmOptions);
+        for (Map.Entry<String, Map<String, List<Double>>> result : results.entrySet()) {
+            System.out.println();
+            System.out.println(result.getKey() + " context, " + runs + " runs, in ms");
+            System.out.println(String.format(Locale.ENGLISH, "%-22s %9s %9s %9s %9s %9s",
+                    "phase", "min", "p50", "p90", "max", "mean"));
+            for (Map.Entry<String, List<Double>> phase : result.getValue().entrySet()) {
+                List<Double> values = phase.getValue();
+                Collections.sort(values);
+                double total = 0;
+                for (double value : values) {
+                    total += value;
+                }
+                System.out.println(String.format(Locale.ENGLISH, "%-22s %9.1f %9.1f %9.1f %9.1f %9.1f",
+                        phase.getKey(), values.get(0), percentile(values, 50), percentile(values, 90),
+                        values.get(values.size() - 1), total / values.size()));
+            }
+        }
+    }
+
+    private static double percentile(List<Double> sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    /**
+     * Starts a runtime and returns the duration of the phases in milliseconds, client side first
+     */
+    private Map<String, Double> coldStart(String context, String init, String run) throws Exception {
+        int port = freePort();
+        List<String> command = command(port);
+        command.add(1, "-Dcamel.openwhisk.context=" + context);
+        command.add(1, "-Dcamel.openwhisk.timeline.response=true");
+        Path output = Files.createTempFile("coldstart-", ".log");
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(output.toFile());
+
+        Map<String, Double> phases = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        Process process = builder.start();
+        boolean success = false;
+        try {
+            waitForPort(process, port, start);
+            long listening = System.nanoTime();
+            Map<?, ?> response = post(port, "/init", init);
+            long initialized = System.nanoTime();
+            post(port, "/run", run);
+            long firstRun = System.nanoTime();
+            post(port, "/run", run);
+            long secondRun = System.nanoTime();
+
+            phases.put(SPAWN_TO_LISTEN, millis(listening - start));
+            phases.put(INIT, millis(initialized - listening));
+            phases.put(FIRST_RUN, millis(firstRun - initialized));
+            phases.put(TIME_TO_FIRST_RESPONSE, millis(firstRun - start));
+            phases.put(SECOND_RUN, millis(secondRun - firstRun));
+            Object timeline = response.get("timeline");
+            if (timeline instanceof Map) {
+                for (Map.Entry<?, ?> phase : ((Map<?, ?>) timeline).entrySet()) {
+                    phases.put("server." + phase.getKey(), ((Number) phase.getValue()).doubleValue());
+                }
+            }
+            success = true;
+            return phases;
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+            if (success) {
+                Files.delete(output);
+            } else {
+                System.err.println("Output of the runtime kept in " + output);
+            }
+        }
+    }
+
+    private List<String> command(int port) {
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.add("-Dfile.encoding=UTF-8");
+        command.add("-Dcamel.openwhisk.port=" + port);
+        if (cds != null) {
+            command.addAll(appCds());
+            command.add("-Xshare:auto");
+            command.add("-XX:SharedArchiveFile=" + cds);
+        }
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(runtime.toString());
+        command.add(RUNTIME_MAIN);
+        return command;
+    }
+
+    /**
+     * Creates the AppCDS archive as the <code>Dockerfile</code> does, from the classes loaded in <code>test</code> mode
+     */
+    private void dumpArchive() throws Exception {
+        Path classList = Files.createTempFile("coldstart-", ".lst");
+        try {
+            List<String> dump = new ArrayList<>();
+            dump.add(java);
+            dump.addAll(appCds());
+            dump.add("-XX:DumpLoadedClassList=" + classList);
+            dump.add("-Dcamel.openwhisk.port=" + freePort());
+            dump.add("-cp");
+            dump.add(runtime.toString());
+            dump.add(RUNTIME_MAIN);
+            dump.add("test");
+            exec(dump);
+
+            List<String> share = new ArrayList<>();
+            share.add(java);
+            share.addAll(appCds());
+            share.add("-Xshare:dump");
+            share.add("-XX:SharedClassListFile=" + classList);
+            share.add("-XX:SharedArchiveFile=" + cds);
+            share.add("-cp");
+            share.add(runtime.toString());
+            exec(share);
+        } finally {
+            Files.deleteIfExists(classList);
+        }
+    }
+
+    /**
+     * The flag unlocking application class data sharing, only needed on Java 10
+     */
+    private static List<String> appCds() {
+        return "10".equals(System.getProperty("java.specification.version"))
+                ? Collections.singletonList("-XX:+UseAppCDS")
+                : Collections.<String>emptyList();
+    }
+
+    private static void exec(List<String> command) throws Exception {
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(new File(System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null"))
+                .start();
+        int status = process.waitFor();
+        if (status != 0) {
+            throw new IllegalStateException("Command failed with status " + status + ": " + command);
+        }
+    }
+
+    private static void waitForPort(Process process, int port, long start) throws Exception {
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port));
+                return;
+            } catch (IOException e) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Runtime exited with status " + process.exitValue());
+                }
+                if (System.nanoTime() - start > START_TIMEOUT) {
+                    throw new IllegalStateException("Runtime not listening on port " + port);
+                }
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static Map<?, ?> post(int port, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        connection.setFixedLengthStreamingMode(content.length);
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(content);
+        }
+        int code = connection.getResponseCode();
+        if (code != 200) {
+            throw new IOException("Unexpected response to " + path + ": " + code + " " + connection.getResponseMessage());
+        }
+        try (InputStream is = connection.getInputStream()) {
+            return (Map<?, ?>) Utf8JsonReader.read(is, connection.getContentLength());
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 100000 / 10.0;
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.fuse.openwhisk.camel.core.json.JsonReader;
+import org.jboss.fuse.openwhisk.camel.core.json.JsonTape;
+import org.jboss.fuse.openwhisk.camel.core.json.JsonWriter;
+import org.jboss.fuse.openwhisk.camel.core.json.Utf8JsonReader;
+import org.jboss.fuse.openwhisk.camel.core.json.Utf8Output;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing and serialization of /run payloads of various shapes and sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    /**
+     * <code>flat</code>: an object of strings, numbers and booleans,
+     * <code>nested</code>: objects nested in objects,
+     * <code>array</code>: an array of small objects,
+     * <code>text</code>: long strings with escapes and non-ASCII characters
+     */
+    @Param({ "flat", "nested", "array", "text" })
+    public String shape;
+
+    /**
+     * Approximate number of values
+     */
+    @Param({ "10", "1000" })
+    public int size;
+
+    private String json;
+    private byte[] bytes;
+    private Object value;
+
+    @Setup
+    public void setup() throws IOException {
+        value = Payloads.create(shape, size);
+        StringWriter writer = new StringWriter();
+        JsonWriter.write(writer, value);
+        json = writer.toString();
+        bytes = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object readChars() throws IOException {
+        return JsonReader.read(new StringReader(json));
+    }
+
+    @Benchmark
+    public Object readBytes() throws IOException {
+        return Utf8JsonReader.read(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public Object readLazy() throws IOException {
+        return JsonTape.parse(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public String writeChars() throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonWriter.write(writer, value);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public int writeBytes() throws IOException {
+        Utf8Output output = Utf8Output.acquire();
+        JsonWriter.write(output, value);
+        return output.size();
+    }
+
+    static final class Payloads {
+
+        private Payloads() {
+        }
+
+        static Object create(String shape, int size) {
+            switch (shape) {
+                case "flat":
+                    return flat(size);
+                case "nested":
+                    return nested(size);
+                case "array":
+                    List<Object> list = new ArrayList<>();
+                    for (int i = 0; i < size / 5; i++) {
+                        list.add(flat(5));
+                    }
+                    return list;
+                case "text":
+                    Map<String, Object> text = new LinkedHashMap<>();
+                    for (int i = 0; i < Math.max(1, size / 10); i++) {
+                        StringBuilder sb = new StringBuilder();
+                        for (int j = 0; j < 10; j++) {
+                            sb.append("Line ").append(j).append(" with \"quotes\", a tab\tand accents: d\u00e9j\u00e0 vu \u2713\n");
+                        }
+                        text.put("text" + i, sb.toString());
+                    }
+                    return text;
+                default:
+                    throw new IllegalArgumentException("Unknown shape: " + shape);
+            }
+        }
+
+        private static Map<String, Object> flat(int size) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                switch (i % 4) {
+                    case 0:
+                        map.put("name" + i, "value" + i);
+                        break;
+                    case 1:
+                        map.put("count" + i, (double) i * 31);
+                        break;
+                    case 2:
+                        map.put("ratio" + i, i / 7.0);
+                        break;
+                    default:
+                        map.put("enabled" + i, i % 8 == 3);
+                        break;
+                }
+            }
+            return map;
+        }
+
+        private static Map<String, Object> nested(int size) {
+            // trees of objects nested 10 levels deep, with 4 values on each level
+            Map<String, Object> root = new LinkedHashMap<>();
+            for (int i = 0; i * 50 < Math.max(size, 50); i++) {
+                Map<String, Object> level = flat(4);
+                root.put("tree" + i, level);
+                for (int depth = 1; depth < 10; depth++) {
+                    Map<String, Object> child = flat(4);
+                    level.put("child", child);
+                    level = child;
+                }
+            }
+            return root;
+        }
+    }
+
+}
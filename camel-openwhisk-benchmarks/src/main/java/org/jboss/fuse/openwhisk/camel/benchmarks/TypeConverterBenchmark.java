@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.TypeConverter;
+import org.apache.camel.impl.SimpleRegistry;
+import org.apache.camel.support.TypeConverterSupport;
+import org.jboss.fuse.openwhisk.camel.core.support.FastCamelContext;
+import org.jboss.fuse.openwhisk.camel.core.support.FastTypeConverterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups of {@link FastTypeConverterRegistry#convertTo(Class, Object)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeConverterBenchmark {
+
+    public static class Source {
+        @Override
+        public String toString() {
+            return "source";
+        }
+    }
+
+    public static class SubSource extends Source {
+    }
+
+    public interface Result {
+    }
+
+    public static class Target implements Result {
+    }
+
+    public static class Unrelated {
+    }
+
+    private FastCamelContext context;
+    private FastTypeConverterRegistry registry;
+    private Source source;
+    private String number;
+    private Double jsonNumber;
+
+    @Setup
+    public void setup() throws Exception {
+        context = new FastCamelContext(new SimpleRegistry());
+        context.start();
+        registry = (FastTypeConverterRegistry) context.getTypeConverterRegistry();
+        registry.addTypeConverter(Target.class, Source.class, new TypeConverterSupport() {
+            @Override
+            public <T> T convertTo(Class<T> type, Exchange exchange, Object value) {
+                return type.cast(new Target());
+            }
+        });
+        source = new Source();
+        number = "12345";
+        jsonNumber = 12345.0;
+        // load all the converters
+        registry.lookup(Unrelated.class, Source.class);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    /**
+     * A string converted to a number, before any lookup
+     */
+    @Benchmark
+    public Integer optimised() {
+        return registry.convertTo(Integer.class, number);
+    }
+
+    /**
+     * A JSON number, parsed as a double, converted to a primitive type
+     */
+    @Benchmark
+    public Integer numeric() {
+        return registry.convertTo(int.class, jsonNumber);
+    }
+
+    /**
+     * A converter registered for the exact pair of types
+     */
+    @Benchmark
+    public Target hit() {
+        return registry.convertTo(Target.class, source);
+    }
+
+    /**
+     * Resolution of the converter registered from a super class to a derived type, which the conversions
+     * only do once per pair of types
+     */
+    @Benchmark
+    public TypeConverter derived() {
+        return registry.lookup(Result.class, SubSource.class);
+    }
+
+    /**
+     * No converter at all, going through the lookup and all the fallback converters
+     */
+    @Benchmark
+    public Unrelated miss() {
+        return registry.convertTo(Unrelated.class, source);
+    }
+
+    /**
+     * Converted by the to-string fallback converter, which is never promoted to a registered converter,
+     * but is tried first once remembered for the pair of types
+     */
+    @Benchmark
+    public String fallback() {
+        return registry.convertTo(String.class, source);
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An on-disk cache of the actions, keyed by the hash of their content.
+ *
+ * Each entry is a directory containing the decoded jar and the artifacts
+ * computed when the action was first initialized, so that a container
+ * initialized again with the same action can skip that work.
+ * Files are written to a temporary name first, then moved atomically,
+ * so that a cache shared by several containers is never seen partially written.
+ *
+ * The cached jars are run without being checked against their key, so the
+ * directory must only be accessible by the user running the containers: it is
+ * created with owner-only permissions, and the cache is disabled if an existing
+ * directory is accessible by other users.  No resource index is stored, since
+ * the cached jars are indexed from their central directory, which is cheap
+ * compared to decoding them.
+ */
+final class ActionCache {
+
+    static final String JAR = "action.jar";
+    static final String CLASSES = "classes.lst";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = EnumSet.of(
+            PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE);
+
+    private final Logger log = LoggerFactory.getLogger(ActionCache.class);
+
+    private final Path directory;
+
+    ActionCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cache configured with the <code>camel.openwhisk.cache.dir</code>
+     * system property, or <code>null</code> if none is configured.
+     */
+    static ActionCache fromSystemProperties() {
+        String dir = System.getProperty("camel.openwhisk.cache.dir");
+        return dir != null && !dir.isEmpty() ? open(Paths.get(dir)) : null;
+    }
+
+    /**
+     * Returns the cache in the given directory, which is created if needed, or
+     * <code>null</code> if the directory can be written by other users.
+     */
+    static ActionCache open(Path directory) {
+        Logger log = LoggerFactory.getLogger(ActionCache.class);
+        try {
+            if (!Files.exists(directory, LinkOption.NOFOLLOW_LINKS)) {
+                Path parent = directory.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                try {
+                    Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+                } catch (FileAlreadyExistsException e) {
+                    // created by another container
+                }
+            }
+            // a directory only accessible by its owner, which can be written, belongs to the current user
+            if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)
+                    || !OWNER_ONLY.containsAll(Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS))
+                    || !Files.isWritable(directory)) {
+                log.warn("The action cache is disabled, as " + directory + " is not a directory only accessible by the current user");
+                return null;
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("The action cache is disabled, as the permissions of " + directory + " cannot be checked: " + e);
+            return null;
+        }
+        return new ActionCache(directory);
+    }
+
+    /**
+     * Computes the key of an action from its encoded content
+     */
+    static String key(byte[] buffer, int offset, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(buffer, offset, length);
+            byte[] hash = digest.digest();
+            char[] key = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                key[i * 2] = HEX[(hash[i] >> 4) & 0x0F];
+                key[i * 2 + 1] = HEX[hash[i] & 0x0F];
+            }
+            return new String(key);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the cached jar for the given key, or <code>null</code> if none
+     */
+    Path getJar(String key) {
+        Path jar = directory.resolve(key).resolve(JAR);
+        return Files.isRegularFile(jar) ? jar : null;
+    }
+
+    /**
+     * Decodes the given base64 content into the cache.
+     *
+     * @return the cached jar, or <code>null</code> if it could not be written
+     * @throws IllegalArgumentException if the content is not valid base64
+     */
+    Path storeJar(String key, final byte[] buffer, final int offset, final int length) {
+        return store(key, JAR, new Writer() {
+            @Override
+            public void write(Path path) throws IOException {
+                BinaryDecoder.decode(buffer, offset, length, path);
+            }
+        });
+    }
+
+    /**
+     * Stores the given decoded jar into the cache.
+     *
+     * @return the cached jar, or <code>null</code> if it could not be written
+     */
+    Path storeJar(String key, final byte[] jar) {
+        return store(key, JAR, new Writer() {
+            @Override
+            public void write(Path path) throws IOException {
+                Files.write(path, jar);
+            }
+        });
+    }
+
+    /**
+     * Returns the lines of the given artifact, or <code>null</code> if it has not been stored
+     */
+    List<String> getLines(String key, String name) {
+        try {
+            return Files.readAllLines(directory.resolve(key).resolve(name), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Unable to read " + name + " from the action cache: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the given artifact, unless it already exists
+     */
+    void storeLines(String key, String name, final Collection<String> lines) {
+        if (!Files.exists(directory.resolve(key).resolve(name))) {
+            store(key, name, new Writer() {
+                @Override
+                public void write(Path path) throws IOException {
+                    Files.write(path, lines, StandardCharsets.UTF_8);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes a file of the given entry.  Failures are only logged, as the cache
+     * is merely an optimization.
+     */
+    private Path store(String key, String name, Writer writer) {
+        try {
+            Path dir = Files.createDirectories(directory.resolve(key));
+            Path tmp = Files.createTempFile(dir, name, ".tmp");
+            try {
+                writer.write(tmp);
+                return Files.move(tmp, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to store " + name + " into the action cache: " + e);
+            return null;
+        }
+    }
+
+    private interface Writer {
+        void write(Path path) throws IOException;
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the class data sharing archive of a given action.
+ *
+ * The runtime is started, initialized with the action and invoked with a sample
+ * payload, so that the classes used by the route are loaded.  When the JVM has not
+ * been launched with the CDS options, a child JVM is launched with them, followed
+ * by a dump of the archive on JDKs which do not support dynamic archives.
+ */
+class ActionTrainer {
+
+    static final String CLASS_LIST = "classes.lst";
+    static final String ARCHIVE = "app-cds.jsa";
+
+    /**
+     * The number of /run calls made with the sample payload
+     */
+    static final int ITERATIONS = Integer.getInteger("camel.openwhisk.train.iterations", 10);
+
+    private final Logger log = LoggerFactory.getLogger(ActionTrainer.class);
+
+    private final Path jar;
+    private final String main;
+    private final String payload;
+    private final Path output;
+
+    ActionTrainer(Path jar, String main, String payload, Path output) {
+        this.jar = jar;
+        this.main = main;
+        this.payload = payload;
+        this.output = output;
+    }
+
+    void train() throws Exception {
+        int version = javaVersion();
+        if (version < 10) {
+            throw new IllegalStateException("Training requires Java 10 or later");
+        }
+        List<String> arguments = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        for (String arg : arguments) {
+            if (arg.startsWith("-XX:DumpLoadedClassList") || arg.startsWith("-XX:ArchiveClassesAtExit")) {
+                run();
+                return;
+            }
+        }
+        Files.createDirectories(output);
+        Path classList = output.resolve(CLASS_LIST).toAbsolutePath();
+        Path archive = output.resolve(ARCHIVE).toAbsolutePath();
+
+        List<String> command = javaCommand(version);
+        for (String arg : arguments) {
+            if (arg.startsWith("-D")) {
+                command.add(arg);
+            }
+        }
+        command.add("-XX:DumpLoadedClassList=" + classList);
+        if (version >= 13) {
+            command.add("-XX:ArchiveClassesAtExit=" + archive);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(CamelRuntime.class.getName());
+        command.add("train");
+        command.add(jar.toAbsolutePath().toString());
+        command.add(main);
+        command.add(payload);
+        command.add(output.toAbsolutePath().toString());
+        exec(command);
+
+        if (version < 13) {
+            command = javaCommand(version);
+            command.add("-Xshare:dump");
+            command.add("-XX:SharedClassListFile=" + classList);
+            command.add("-XX:SharedArchiveFile=" + archive);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            exec(command);
+        }
+        log.info("Class list written to {}, archive written to {}", classList, archive);
+    }
+
+    /**
+     * Runs the action in this JVM
+     */
+    private void run() throws Exception {
+        CamelRuntime runtime = new CamelRuntime(0);
+        runtime.start();
+        try {
+            String base = "http://localhost:" + runtime.getAddress().getPort();
+            String code = Base64.getEncoder().encodeToString(Files.readAllBytes(jar));
+            String init = "{\"value\":{\"main\":\"" + main + "\",\"binary\":true,\"code\":\"" + code + "\"}}";
+            post(base + "/init", init);
+            String run = "{\"value\":" + readPayload(payload) + ",\"activation_id\":\"training\"}";
+            for (int i = 0; i < ITERATIONS; i++) {
+                post(base + "/run", run);
+            }
+        } finally {
+            runtime.stop();
+        }
+    }
+
+    /**
+     * Returns the content of the given file, or the payload itself if it is not a file
+     */
+    static String readPayload(String payload) throws IOException {
+        Path path = Paths.get(payload);
+        return Files.isRegularFile(path) ? new String(Files.readAllBytes(path), StandardCharsets.UTF_8) : payload;
+    }
+
+    private void post(String url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int code = connection.getResponseCode();
+        try (InputStream is = code < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int nb;
+            while (is != null && (nb = is.read(buf)) > 0) {
+                baos.write(buf, 0, nb);
+            }
+            if (code != 200) {
+                throw new IOException("Unexpected response from " + url + ": " + code + " " + baos.toString("UTF-8"));
+            }
+        }
+    }
+
+    private static List<String> javaCommand(int version) {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (version == 10) {
+            command.add("-XX:+UseAppCDS");
+        }
+        return command;
+    }
+
+    private static void exec(List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        int exit = process.waitFor();
+        if (exit != 0) {
+            throw new IOException("Command " + command + " exited with " + exit);
+        }
+    }
+
+    private static int javaVersion() {
+        String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        return Integer.parseInt(version);
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jboss.fuse.openwhisk.camel.core.json.JsonTape;
+import org.jboss.fuse.openwhisk.camel.core.json.JsonWriter;
+import org.jboss.fuse.openwhisk.camel.core.json.Utf8JsonReader;
+import org.jboss.fuse.openwhisk.camel.core.json.Utf8Output;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Warms up an action with the sample payloads shipped in its jar.
+ *
+ * Once the action is initialized, each JSON file found under {@link #PREFIX} is used in
+ * turn as the value of an activation, on a background thread, so that the classes are loaded
+ * and the hot paths compiled before the first activations.  The responses are discarded.
+ * The warmup pauses while activations are running, and stops after the given number of
+ * iterations, when the time budget is exhausted, or once the JIT compiler has been idle
+ * for a while.  Unless the action allows concurrent activations, each iteration holds
+ * the lock serializing the activations.  The output of the warmup is dropped, which is
+ * only possible when the output of the activations is captured, so the warmup does not
+ * run otherwise.
+ */
+final class ActionWarmup implements Runnable {
+
+    static final String PREFIX = "META-INF/openwhisk/warmup/";
+
+    /**
+     * Maximum number of activations run with the sample payloads
+     */
+    static final int ITERATIONS = Integer.getInteger("camel.openwhisk.warmup.iterations", 1000);
+
+    /**
+     * Maximum duration of the warmup in milliseconds
+     */
+    static final long BUDGET = Long.getLong("camel.openwhisk.warmup.budget", 2000);
+
+    /**
+     * Number of activations without any compilation after which the warmup stops
+     */
+    private static final int IDLE_ITERATIONS = 50;
+
+    private final Logger log = LoggerFactory.getLogger(ActionWarmup.class);
+
+    private final JarLoader loader;
+    private final AtomicInteger activations;
+    private final Object lock;
+
+    /**
+     * @param activations the number of activations running or waiting, during which the warmup pauses
+     * @param lock the lock held by the activations, or <code>null</code> if they can run concurrently
+     */
+    ActionWarmup(JarLoader loader, AtomicInteger activations, Object lock) {
+        this.loader = loader;
+        this.activations = activations;
+        this.lock = lock;
+    }
+
+    void start() {
+        if (ITERATIONS > 0 && BUDGET > 0) {
+            if (!ActivationLog.CAPTURE) {
+                log.debug("Warmup disabled, the output of the activations is not captured");
+                return;
+            }
+            Thread thread = new Thread(this, "ActionWarmup");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<byte[]> payloads;
+        try {
+            payloads = readPayloads();
+        } catch (IOException e) {
+            log.warn("Unable to read the warmup payloads: " + e);
+            return;
+        }
+        if (payloads.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(BUDGET);
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        if (compiler != null && !compiler.isCompilationTimeMonitoringSupported()) {
+            compiler = null;
+        }
+        long compilationTime = -1;
+        int idle = 0;
+        int iterations = 0;
+        Thread.currentThread().setContextClassLoader(loader);
+        while (iterations < ITERATIONS && System.nanoTime() < deadline) {
+            if (activations.get() > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            byte[] payload = payloads.get(iterations % payloads.size());
+            try {
+                if (lock == null) {
+                    execute(payload);
+                } else {
+                    synchronized (lock) {
+                        // an activation may have arrived while waiting for the lock
+                        if (activations.get() > 0) {
+                            continue;
+                        }
+                        execute(payload);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Warmup stopped after an error", e);
+                break;
+            }
+            iterations++;
+            if (compiler != null) {
+                long time = compiler.getTotalCompilationTime();
+                if (time != compilationTime) {
+                    compilationTime = time;
+                    idle = 0;
+                } else if (++idle >= IDLE_ITERATIONS) {
+                    break;
+                }
+            }
+        }
+        log.info("Warmup finished after {} iterations in {} ms",
+                iterations, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private List<byte[]> readPayloads() throws IOException {
+        List<byte[]> payloads = new ArrayList<>();
+        for (String name : loader.getResourceNames(PREFIX)) {
+            if (name.endsWith(".json")) {
+                URL url = loader.findResource(name);
+                try (InputStream is = url.openStream()) {
+                    ByteBuffer content = Utf8JsonReader.readFully(is, -1, false);
+                    byte[] payload = new byte[content.remaining()];
+                    content.get(payload);
+                    payloads.add(payload);
+                }
+            }
+        }
+        return payloads;
+    }
+
+    private void execute(byte[] payload) throws IOException {
+        Map<String, ?> value = CamelRuntime.LAZY_JSON
+                ? (Map) JsonTape.parse(payload, 0, payload.length, CamelRuntime.NUMBER_MODE)
+                : (Map) Utf8JsonReader.read(payload, 0, payload.length, CamelRuntime.NUMBER_MODE);
+        Map<String, Object> env = new HashMap<>();
+        env.put("activation_id", "warmup");
+        ActivationLog.suppress();
+        WhiskSecurityManager.enterAction();
+        try {
+            Map<String, ?> output = loader.invokeMain(value, env);
+            if (output != null) {
+                JsonWriter.write(Utf8Output.acquire(), output);
+            }
+        } finally {
+            WhiskSecurityManager.exitAction();
+            ActivationLog.discard();
+        }
+    }
+
+}
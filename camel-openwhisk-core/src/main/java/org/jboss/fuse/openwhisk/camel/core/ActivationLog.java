@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Captures the output of the activations.
+ *
+ * When enabled, <code>System.out</code> and <code>System.err</code> are replaced by
+ * streams which buffer the output of the threads running an activation.  This includes
+ * the logs of slf4j-simple, which looks up the console streams for each message.  At the
+ * end of the activation, each buffer is written along with the activation sentinel in a
+ * single write, so that the lines of concurrent activations are not interleaved.  Output
+ * written outside of activations, including by the threads an activation creates, which
+ * may outlive it, goes directly to the console.
+ *
+ * The output of the warmup is dropped, so that it is never attributed to an activation.
+ * As this requires the console streams to be replaced, the warmup only runs when the
+ * capture is enabled.
+ */
+final class ActivationLog {
+
+    static final String SENTINEL = "XXX_THE_END_OF_A_WHISK_ACTIVATION_XXX";
+
+    /**
+     * Buffer the output of each activation and write it at the end of the activation
+     */
+    static final boolean CAPTURE = Boolean.getBoolean("camel.openwhisk.log.capture");
+
+    /**
+     * Size above which the output of an activation is written before the end of the activation
+     */
+    static final int MAX_BUFFER_SIZE = Integer.getInteger("camel.openwhisk.log.maxBufferSize", 1024 * 1024);
+
+    private static final byte[] SENTINEL_LINE = (SENTINEL + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+
+    private static final ThreadLocal<ActivationLog> CURRENT = new ThreadLocal<>();
+
+    private static PrintStream out;
+    private static PrintStream err;
+
+    private final Buffer outBuffer = new Buffer();
+    private final Buffer errBuffer = new Buffer();
+    private final boolean suppressed;
+    private boolean closed;
+
+    private ActivationLog(boolean suppressed) {
+        this.suppressed = suppressed;
+    }
+
+    /**
+     * Replaces the console streams, if the capture is enabled.  Subsequent calls do nothing.
+     */
+    static synchronized void install() {
+        if (CAPTURE && out == null) {
+            out = System.out;
+            err = System.err;
+            System.setOut(new PrintStream(new CaptureStream(out, false), true));
+            System.setErr(new PrintStream(new CaptureStream(err, true), true));
+        }
+    }
+
+    /**
+     * Starts capturing the output of the current thread
+     */
+    static void begin() {
+        if (CAPTURE && out != null) {
+            CURRENT.set(new ActivationLog(false));
+        }
+    }
+
+    /**
+     * Starts dropping the output of the current thread, if the capture is enabled
+     */
+    static void suppress() {
+        if (CAPTURE && out != null) {
+            CURRENT.set(new ActivationLog(true));
+        }
+    }
+
+    /**
+     * Writes the output of the current activation followed by the sentinels
+     */
+    static void end() {
+        ActivationLog log = CURRENT.get();
+        if (log != null) {
+            CURRENT.remove();
+            log.close();
+        } else {
+            System.out.println(SENTINEL);
+            System.out.flush();
+            System.err.println(SENTINEL);
+            System.err.flush();
+        }
+    }
+
+    /**
+     * Drops the output of the current thread captured since {@link #begin()} or {@link #suppress()}
+     */
+    static void discard() {
+        ActivationLog log = CURRENT.get();
+        if (log != null) {
+            CURRENT.remove();
+            synchronized (log) {
+                log.closed = true;
+            }
+        }
+    }
+
+    private synchronized void write(boolean error, byte[] b, int off, int len) {
+        if (suppressed) {
+            return;
+        }
+        Buffer buffer = error ? errBuffer : outBuffer;
+        PrintStream console = error ? err : out;
+        if (closed) {
+            console.write(b, off, len);
+        } else {
+            buffer.write(b, off, len);
+            if (buffer.count > MAX_BUFFER_SIZE) {
+                console.write(buffer.bytes, 0, buffer.count);
+                buffer.count = 0;
+            }
+        }
+    }
+
+    private synchronized void close() {
+        closed = true;
+        flush(outBuffer, out);
+        flush(errBuffer, err);
+    }
+
+    private static void flush(Buffer buffer, PrintStream console) {
+        buffer.write(SENTINEL_LINE, 0, SENTINEL_LINE.length);
+        console.write(buffer.bytes, 0, buffer.count);
+        console.flush();
+        buffer.bytes = null;
+    }
+
+    private static final class Buffer {
+
+        private byte[] bytes = new byte[1024];
+        private int count;
+
+        void write(byte[] b, int off, int len) {
+            if (count + len > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, count + len));
+            }
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Sends the output of the activation threads to their buffer, and the remaining output to the console
+     */
+    private static final class CaptureStream extends OutputStream {
+
+        private final PrintStream console;
+        private final boolean error;
+
+        CaptureStream(PrintStream console, boolean error) {
+            this.console = console;
+            this.error = error;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ActivationLog log = CURRENT.get();
+            if (log != null) {
+                log.write(error, b, off, len);
+            } else {
+                console.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (CURRENT.get() == null) {
+                console.flush();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes the base64 content of an action into a file or into memory.
+ *
+ * The content is decoded in chunks, which are written at their final position
+ * in the file or array, so that big actions can be decoded using all the
+ * available cores.
+ */
+final class BinaryDecoder {
+
+    /**
+     * Contents larger than this number of chars are decoded in parallel
+     */
+    static final int PARALLEL_THRESHOLD = Integer.getInteger("camel.openwhisk.init.parallelDecodeThreshold", 4 * 1024 * 1024);
+
+    /**
+     * The number of chars decoded at once, which must be a multiple of 4
+     */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private BinaryDecoder() {
+    }
+
+    /**
+     * Decodes the given base64 chars into the given file.
+     *
+     * @throws IllegalArgumentException if the content is not valid base64
+     */
+    static void decode(byte[] buffer, int offset, int length, Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            decode(buffer, offset, length, new Sink() {
+                @Override
+                public void write(ByteBuffer decoded, long position) throws IOException {
+                    while (decoded.hasRemaining()) {
+                        position += channel.write(decoded, position);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Decodes the given base64 chars into memory.
+     *
+     * @throws IllegalArgumentException if the content is not valid base64
+     */
+    static byte[] decode(byte[] buffer, int offset, int length) throws IOException {
+        int padding = 0;
+        while (padding < 2 && padding < length && buffer[offset + length - 1 - padding] == '=') {
+            padding++;
+        }
+        int remainder = (length - padding) % 4;
+        final byte[] result = new byte[(length - padding) / 4 * 3 + Math.max(0, remainder - 1)];
+        decode(buffer, offset, length, new Sink() {
+            @Override
+            public void write(ByteBuffer decoded, long position) {
+                decoded.get(result, (int) position, decoded.remaining());
+            }
+        });
+        return result;
+    }
+
+    private static void decode(final byte[] buffer, final int offset, final int length, final Sink sink) throws IOException {
+        int chunks = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (length < PARALLEL_THRESHOLD || chunks < 2 || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            for (int i = 0; i < chunks; i++) {
+                decodeChunk(buffer, offset, length, i, sink);
+            }
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            final int chunk = i;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    decodeChunk(buffer, offset, length, chunk, sink);
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while decoding the binary content", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                // the pool may wrap the original exception into a new one of the same type
+                while (cause.getCause() != null && cause.getCause().getClass() == cause.getClass()) {
+                    cause = cause.getCause();
+                }
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private static void decodeChunk(byte[] buffer, int offset, int length, int chunk, Sink sink) throws IOException {
+        int begin = chunk * CHUNK_SIZE;
+        int end = Math.min(begin + CHUNK_SIZE, length);
+        // padding is only allowed at the very end of the content
+        if (end < length && buffer[offset + end - 1] == '=') {
+            throw new IllegalArgumentException("Input byte array has incorrect ending byte at " + (end - 1));
+        }
+        ByteBuffer decoded = Base64.getDecoder().decode(ByteBuffer.wrap(buffer, offset + begin, end - begin));
+        sink.write(decoded, (long) begin / 4 * 3);
+    }
+
+    /**
+     * Receives the decoded chunks, possibly from several threads
+     */
+    private interface Sink {
+        void write(ByteBuffer decoded, long position) throws IOException;
+    }
+
+}
@@ -17,156 +17,450 @@
 
 package org.jboss.fuse.openwhisk.camel.core;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.Reader;
 import java.io.StringWriter;
 import java.net.InetSocketAddress;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.util.Base64;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipException;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import org.jboss.fuse.openwhisk.camel.api.CamelFunctionRouteBuilder;
 import org.jboss.fuse.openwhisk.camel.core.function.CamelFunction;
-import org.jboss.fuse.openwhisk.camel.core.json.JsonReader;
+import org.jboss.fuse.openwhisk.camel.core.json.JsonTape;
 import org.jboss.fuse.openwhisk.camel.core.json.JsonWriter;
+import org.jboss.fuse.openwhisk.camel.core.json.NumberMode;
+import org.jboss.fuse.openwhisk.camel.core.json.Utf8JsonReader;
+import org.jboss.fuse.openwhisk.camel.core.json.Utf8Output;
+import org.jboss.fuse.openwhisk.camel.core.support.ActivationExecutors;
+import org.jboss.fuse.openwhisk.camel.core.support.StartupTimeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class CamelRuntime {
+
+    /**
+     * Parse /run requests into lazy views over the request bytes instead of maps
+     */
+    public static final boolean LAZY_JSON = Boolean.getBoolean("camel.openwhisk.json.lazy");
+
+    /**
+     * Load the action classes directly from the decoded jar instead of a temporary file
+     */
+    public static final boolean IN_MEMORY_JAR = Boolean.getBoolean("camel.openwhisk.init.inMemory");
+
+    /**
+     * How numbers of /run requests are parsed: <code>double</code>, <code>typed</code> or <code>big_decimal</code>
+     */
+    public static final NumberMode NUMBER_MODE = NumberMode.valueOf(
+            System.getProperty("camel.openwhisk.json.numbers", "double").toUpperCase(Locale.ENGLISH));
+
+    /**
+     * Run several activations at once, as allowed by OpenWhisk when the action concurrency is greater than 1
+     */
+    public static final boolean CONCURRENT = Boolean.parseBoolean(System.getenv("__OW_ALLOW_CONCURRENT"))
+            || Boolean.getBoolean("camel.openwhisk.concurrent");
+
+    /**
+     * Maximum number of activations run at once in concurrent mode, which should match the action concurrency
+     */
+    public static final int MAX_CONCURRENCY = Integer.getInteger("camel.openwhisk.maxConcurrency", 100);
+
+    /**
+     * How concurrent activations are run: <code>pool</code>, <code>virtual</code> or <code>auto</code>
+     */
+    public static final String EXECUTION_MODEL = System.getProperty("camel.openwhisk.executor", ActivationExecutors.AUTO);
+
+    /**
+     * The front end receiving the requests: <code>jdk</code> for the JDK HTTP server, or <code>nio</code>
+     */
+    public static final String SERVER = System.getProperty("camel.openwhisk.server", "jdk");
+
+    /**
+     * The port on which the requests are served
+     */
+    public static final int PORT = Integer.getInteger("camel.openwhisk.port", 8080);
+
+    /**
+     * Path of a Unix domain socket on which the requests are also served, requires Java 16 or later
+     */
+    public static final String UNIX_SOCKET = System.getProperty("camel.openwhisk.unixSocket");
+
+    private final ActionCache cache = ActionCache.fromSystemProperties();
+
     private HttpServer server;
 
-    private JarLoader loader = null;
+    private NioHttpServer nioServer;
+
+    private NioHttpServer unixServer;
+
+    private final Object runLock = new Object();
+
+    private final AtomicInteger activations = new AtomicInteger();
+
+    private volatile JarLoader loader = null;
 
     private Logger log = LoggerFactory.getLogger(CamelRuntime.class);
 
     public CamelRuntime(int port) throws IOException {
-        this.server = HttpServer.create(new InetSocketAddress(port), -1);
-
-        this.server.createContext("/init", new InitHandler());
-        this.server.createContext("/run", new RunHandler());
-        this.server.setExecutor(null); // creates a default executor
+        ActivationLog.install();
+        Executor executor = CONCURRENT ? ActivationExecutors.create(EXECUTION_MODEL, MAX_CONCURRENCY) : null;
+        if ("nio".equals(SERVER)) {
+            this.nioServer = new NioHttpServer(new InetSocketAddress(port), this);
+            this.nioServer.setExecutor(executor);
+        } else if ("jdk".equals(SERVER)) {
+            this.server = HttpServer.create(new InetSocketAddress(port), -1);
+            this.server.createContext("/init", new InitHandler());
+            this.server.createContext("/run", new RunHandler());
+            this.server.setExecutor(executor); // null creates a default executor
+        } else {
+            throw new IllegalArgumentException("Unknown server: " + SERVER);
+        }
+        if (UNIX_SOCKET != null) {
+            Path path = Paths.get(UNIX_SOCKET);
+            Files.deleteIfExists(path);
+            this.unixServer = new NioHttpServer(NioHttpServer.unixAddress(path), this);
+            this.unixServer.setExecutor(executor);
+            path.toFile().deleteOnExit();
+        }
     }
 
     public void setExecutor(Executor executor) {
-        server.setExecutor(executor);
+        if (nioServer != null) {
+            nioServer.setExecutor(executor);
+        } else {
+            server.setExecutor(executor);
+        }
+        if (unixServer != null) {
+            unixServer.setExecutor(executor);
+        }
     }
 
     public void start() {
-        server.start();
-        log.info("Server started on {}", server.getAddress());
+        if (nioServer != null) {
+            nioServer.start();
+        } else {
+            server.start();
+        }
+        if (unixServer != null) {
+            unixServer.start();
+        }
+        StartupTimeline.listening();
+        log.info("Server started on {}", getAddress());
+        if (unixServer != null) {
+            log.info("Server started on unix socket {}", UNIX_SOCKET);
+        }
     }
 
-    private static void writeResponse(HttpExchange t, int code, String content) throws IOException {
-        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
-        t.sendResponseHeaders(code, bytes.length);
-        OutputStream os = t.getResponseBody();
-        os.write(bytes);
-        os.close();
+    public void stop() {
+        if (nioServer != null) {
+            nioServer.stop();
+        } else {
+            server.stop(0);
+        }
+        if (unixServer != null) {
+            unixServer.stop();
+            try {
+                Files.deleteIfExists(Paths.get(UNIX_SOCKET));
+            } catch (IOException e) {
+                log.warn("Unable to delete unix socket " + UNIX_SOCKET + ": " + e);
+            }
+        }
     }
 
-    private static void writeError(HttpExchange t, String errorMessage) throws IOException {
-        StringWriter sw = new StringWriter();
-        JsonWriter.write(sw, Collections.singletonMap("error", errorMessage));
-        writeResponse(t, 502, sw.toString());
+    public InetSocketAddress getAddress() {
+        return nioServer != null ? nioServer.getAddress() : server.getAddress();
     }
 
-    private class InitHandler implements HttpHandler {
-        public void handle(HttpExchange t) throws IOException {
-            log.info("Initialize");
-            if (loader != null) {
-                CamelRuntime.writeError(t, "Cannot initialize the action more than once.");
-                log.error("Error during initialization: Cannot initialize the action more than once.");
-                return;
-            }
+    /**
+     * A request received by the front end
+     */
+    interface Request {
 
-            try {
-                InputStream is = t.getRequestBody();
-                Reader r = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-                ExtJsonReader parser = new ExtJsonReader(r);
-                Map<String, ?> inputObject = (Map) parser.parse();
+        /**
+         * Returns the body of the request, backed by an array
+         *
+         * @param pooled if the array can be a buffer reused by the next requests,
+         *               otherwise the array is owned by the caller
+         */
+        ByteBuffer getBody(boolean pooled) throws IOException;
 
-                Map<String, ?> message = (Map) inputObject.get("value");
-                String mainClass = (String) message.get("main");
-                Path jarPath = (Path) message.get("code");
+        void respond(int code, Object content) throws IOException;
 
-                // Start up the custom classloader. This also checks that the
-                // main method exists.
-                loader = new JarLoader(jarPath, mainClass);
+    }
 
-                CamelRuntime.writeResponse(t, 200, "{ \"OK\": true }");
-                log.info("Initialization finished.");
-            } catch (Exception e) {
-                log.error("Error during initialization", e);
-                CamelRuntime.writeError(t, "An error has occurred (see logs for details): " + e);
+    private static void writeResponse(final HttpExchange t, final int code, Object content) throws IOException {
+        Utf8Output output = Utf8Output.acquire();
+        // large responses are sent using chunked encoding instead of being buffered
+        output.setSpill(new Utf8Output.Spill() {
+            @Override
+            public OutputStream open() throws IOException {
+                t.sendResponseHeaders(code, 0);
+                return t.getResponseBody();
             }
+        });
+        try {
+            JsonWriter.write(output, content);
+            if (output.isSpilled()) {
+                output.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (output.isSpilled()) {
+                // a successful status has been sent, so the client must see a broken response instead of an error
+                throw new ResponseAbortedException(e);
+            }
+            throw e;
+        }
+        if (!output.isSpilled()) {
+            t.sendResponseHeaders(code, output.size());
+            output.writeTo(t.getResponseBody());
+        }
+        t.getResponseBody().close();
+    }
+
+    /**
+     * Thrown when a response fails after its headers have been sent, and the exchange must be aborted
+     */
+    static class ResponseAbortedException extends IOException {
+
+        ResponseAbortedException(Throwable cause) {
+            super("Response aborted after its headers have been sent", cause);
+        }
+    }
+
+    private static int getContentLength(HttpExchange t) {
+        String length = t.getRequestHeaders().getFirst("Content-Length");
+        try {
+            return length != null ? Integer.parseInt(length) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeError(Request request, String errorMessage) throws IOException {
+        request.respond(502, Collections.singletonMap("error", errorMessage));
+    }
+
+    /**
+     * Adapts the exchanges of the JDK HTTP server
+     */
+    private static class ExchangeRequest implements Request {
+
+        private final HttpExchange exchange;
+
+        ExchangeRequest(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        public ByteBuffer getBody(boolean pooled) throws IOException {
+            return Utf8JsonReader.readFully(exchange.getRequestBody(), getContentLength(exchange), pooled);
+        }
+
+        @Override
+        public void respond(int code, Object content) throws IOException {
+            writeResponse(exchange, code, content);
+        }
+    }
+
+    private class InitHandler implements HttpHandler {
+        public void handle(HttpExchange t) throws IOException {
+            init(new ExchangeRequest(t));
         }
     }
 
     private class RunHandler implements HttpHandler {
         public void handle(HttpExchange t) throws IOException {
-            log.info("Running");
-            if (loader == null) {
-                CamelRuntime.writeError(t, "Cannot invoke an uninitialized action.");
-                return;
+            run(new ExchangeRequest(t));
+        }
+    }
+
+    /**
+     * Handles an /init request
+     */
+    synchronized void init(Request request) throws IOException {
+        log.info("Initialize");
+        if (loader != null) {
+            CamelRuntime.writeError(request, "Cannot initialize the action more than once.");
+            log.error("Error during initialization: Cannot initialize the action more than once.");
+            return;
+        }
+
+        long start = System.nanoTime();
+        // a failed initialization can be retried
+        StartupTimeline.reset();
+        WhiskSecurityManager.install();
+        try {
+            ByteBuffer body = request.getBody(true);
+            ExtJsonReader parser = new ExtJsonReader(body, cache);
+            Map<String, ?> inputObject = (Map) parser.parse();
+            // the decoding of the action is recorded separately
+            StartupTimeline.record(StartupTimeline.PARSE, start + StartupTimeline.get(StartupTimeline.DECODE));
+
+            Map<String, ?> message = (Map) inputObject.get("value");
+            String mainClass = (String) message.get("main");
+            Object code = message.get("code");
+
+            // Start up the custom classloader. This also checks that the
+            // main method exists.
+            List<String> classes = parser.cacheKey != null ? cache.getLines(parser.cacheKey, ActionCache.CLASSES) : null;
+            loader = createLoader(code, mainClass, classes);
+            if (parser.cacheKey != null && classes == null) {
+                cache.storeLines(parser.cacheKey, ActionCache.CLASSES, loader.getDefinedClasses());
             }
 
-            ClassLoader cl = Thread.currentThread().getContextClassLoader();
-            SecurityManager sm = System.getSecurityManager();
+            StartupTimeline.record(StartupTimeline.INIT, start);
+            if (StartupTimeline.IN_RESPONSE) {
+                Map<String, Object> response = new LinkedHashMap<>();
+                response.put("OK", true);
+                response.put("timeline", StartupTimeline.toMap());
+                request.respond(200, response);
+            } else {
+                request.respond(200, Collections.singletonMap("OK", true));
+            }
+            log.info("Initialization finished.");
+            new ActionWarmup(loader, activations, CONCURRENT ? null : runLock).start();
+            StringWriter timeline = new StringWriter();
+            JsonWriter.write(timeline, StartupTimeline.toMap());
+            log.info("Startup timeline: {}", timeline);
+        } catch (ResponseAbortedException e) {
+            // the exception closes the connection
+            log.error("Error during initialization", e);
+            throw e;
+        } catch (Exception e) {
+            log.error("Error during initialization", e);
+            CamelRuntime.writeError(request, "An error has occurred (see logs for details): " + e);
+        }
+    }
 
+    private JarLoader createLoader(Object code, String mainClass, List<String> classes) throws Exception {
+        if (code instanceof byte[]) {
+            MemoryJar jar;
             try {
-                InputStream is = t.getRequestBody();
-                Reader r = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-                Map<String, Object> ie = (Map) JsonReader.read(r);
-                Map<String, ?> inputObject = (Map) ie.remove("value");
-
-                Thread.currentThread().setContextClassLoader(loader);
-                System.setSecurityManager(new WhiskSecurityManager());
+                jar = new MemoryJar((byte[]) code);
+            } catch (ZipException e) {
+                log.warn("Unable to load the action from memory, using a temporary file: " + e.getMessage());
+                return new JarLoader(createTempJar((byte[]) code), mainClass, classes);
+            }
+            if (jar.hasTypeConverters()) {
+                // the converters would not be found by the package scan in the memory: urls
+                log.info("The action contains type converters, using a temporary file");
+                return new JarLoader(createTempJar((byte[]) code), mainClass, classes);
+            }
+            return new JarLoader(jar, mainClass, classes);
+        }
+        return new JarLoader((Path) code, mainClass, classes);
+    }
 
-                // User code starts running here.
-                Map<String, ?> output = loader.invokeMain(inputObject, ie);
-                // User code finished running here.
+    private static Path createTempJar(byte[] code) throws IOException {
+        Path path = Files.createTempFile("useraction-", ".jar");
+        Files.write(path, code);
+        return path;
+    }
 
-                if(output == null) {
-                    throw new NullPointerException("The action returned null");
+    /**
+     * Handles a /run request
+     */
+    void run(Request request) throws IOException {
+        if (ActivationExecutors.isRejected()) {
+            request.respond(503, Collections.singletonMap("error", "Too many concurrent activations."));
+            return;
+        }
+        // counted before waiting for the lock, so that the warmup gives way
+        activations.incrementAndGet();
+        try {
+            if (CONCURRENT) {
+                runAction(request);
+            } else {
+                // the listeners and the warmup all run activations, which must still run one at a time
+                synchronized (runLock) {
+                    runAction(request);
                 }
+            }
+        } finally {
+            activations.decrementAndGet();
+        }
+    }
 
-                StringWriter sw = new StringWriter();
-                JsonWriter.write(sw, output);
-                CamelRuntime.writeResponse(t, 200, sw.toString());
-                log.info("Run finished");
-            } catch (Exception e) {
-                log.error("Error during run", e);
-                CamelRuntime.writeError(t, "An error has occurred (see logs for details): " + e);
-            } finally {
-                System.setSecurityManager(sm);
-                Thread.currentThread().setContextClassLoader(cl);
+    private void runAction(Request request) throws IOException {
+        JarLoader loader = this.loader;
+        if (loader == null) {
+            log.info("Running");
+            CamelRuntime.writeError(request, "Cannot invoke an uninitialized action.");
+            return;
+        }
+
+        ActivationLog.begin();
+        log.info("Running");
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        boolean secured = false;
+
+        try {
+            // lazy views keep pointing at the request bytes, which must not be reused
+            ByteBuffer body = request.getBody(!LAZY_JSON);
+            byte[] buffer = body.array();
+            int offset = body.arrayOffset() + body.position();
+            Map<String, Object> ie = LAZY_JSON
+                    ? (Map) JsonTape.parse(buffer, offset, body.remaining(), NUMBER_MODE)
+                    : (Map) Utf8JsonReader.read(buffer, offset, body.remaining(), NUMBER_MODE);
+            Map<String, ?> inputObject = (Map) ie.remove("value");
+
+            Thread.currentThread().setContextClassLoader(loader);
+            WhiskSecurityManager.enterAction();
+            secured = true;
+
+            // User code starts running here.
+            Map<String, ?> output = loader.invokeMain(inputObject, ie);
+            // User code finished running here.
+
+            if(output == null) {
+                throw new NullPointerException("The action returned null");
+            }
 
-                System.err.println("XXX_THE_END_OF_A_WHISK_ACTIVATION_XXX");
-                System.err.flush();
+            request.respond(200, output);
+            log.info("Run finished");
+        } catch (ResponseAbortedException e) {
+            // the exception closes the connection
+            log.error("Error during run", e);
+            throw e;
+        } catch (Exception e) {
+            log.error("Error during run", e);
+            CamelRuntime.writeError(request, "An error has occurred (see logs for details): " + e);
+        } finally {
+            if (secured) {
+                WhiskSecurityManager.exitAction();
             }
+            Thread.currentThread().setContextClassLoader(cl);
+
+            ActivationLog.end();
         }
     }
 
-    private static class ExtJsonReader extends JsonReader {
+    private static class ExtJsonReader extends Utf8JsonReader {
 
-        public ExtJsonReader(Reader reader) {
-            super(reader);
+        private final ActionCache cache;
+        private String cacheKey;
+
+        public ExtJsonReader(ByteBuffer body, ActionCache cache) {
+            super(body.array(), body.arrayOffset() + body.position(), body.remaining());
+            this.cache = cache;
         }
 
         @Override
@@ -193,22 +487,57 @@ public class CamelRuntime {
         }
 
         private Object readBinary() throws IOException {
-            Path path = Files.createTempFile("useraction-", ".jar");
-            read();
-            InputStream in = Base64.getDecoder().wrap(new InputStream() {
-                @Override
-                public int read() throws IOException {
-                    int c = current;
-                    if (c != '\"') {
-                        ExtJsonReader.this.read();
-                    } else {
-                        c = -1;
+            int begin = index;
+            int end = begin;
+            int length = 0;
+            while (end < limit && buffer[end] != '\"') {
+                byte b = buffer[end++];
+                if (b == '\\') {
+                    // some encoders escape the slashes, unescape them in place
+                    if (end == limit || buffer[end] != '/') {
+                        index = end;
+                        throw error("Unsupported escape sequence in binary content");
                     }
-                    return c;
+                    b = buffer[end++];
                 }
-            });
-            Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+                buffer[begin + length++] = b;
+            }
+            if (end == limit) {
+                throw error("Unexpected end of input");
+            }
+            Object code;
+            long start = System.nanoTime();
+            try {
+                code = decode(begin, length);
+            } catch (IllegalArgumentException e) {
+                throw error("Invalid binary content: " + e.getMessage());
+            }
+            StartupTimeline.record(StartupTimeline.DECODE, start);
+            index = end + 1;
             read();
+            return code;
+        }
+
+        private Object decode(int begin, int length) throws IOException {
+            if (cache != null) {
+                cacheKey = ActionCache.key(buffer, begin, length);
+                Path jar = cache.getJar(cacheKey);
+                if (jar == null && !IN_MEMORY_JAR) {
+                    jar = cache.storeJar(cacheKey, buffer, begin, length);
+                }
+                if (jar != null) {
+                    return IN_MEMORY_JAR ? Files.readAllBytes(jar) : jar;
+                }
+            }
+            if (IN_MEMORY_JAR) {
+                byte[] jar = BinaryDecoder.decode(buffer, begin, length);
+                if (cache != null) {
+                    cache.storeJar(cacheKey, jar);
+                }
+                return jar;
+            }
+            Path path = Files.createTempFile("useraction-", ".jar");
+            BinaryDecoder.decode(buffer, begin, length, path);
             return path;
         }
     }
@@ -223,7 +552,7 @@ public class CamelRuntime {
                     return th;
                 }
             });
-            CamelRuntime camelRuntime = new CamelRuntime(8080);
+            CamelRuntime camelRuntime = new CamelRuntime(PORT);
             camelRuntime.start();
             CamelFunction function = new CamelFunction();
             function.addRouteBuilder(new CamelFunctionRouteBuilder() {
@@ -236,8 +565,16 @@ public class CamelRuntime {
             function.execute(Collections.<String, Object>emptyMap(), Collections.<String, Object>emptyMap());
             System.out.println("OK !");
             System.exit(0);
+        } else if ((args.length == 4 || args.length == 5) && "train".equals(args[0])) {
+            Path output = Paths.get(args.length == 5 ? args[4] : ".");
+            new ActionTrainer(Paths.get(args[1]), args[2], args[3], output).train();
+            System.exit(0);
+        } else if ((args.length == 5 || args.length == 6) && "invoke".equals(args[0])) {
+            int count = args.length == 6 ? Integer.parseInt(args[5]) : 1;
+            LocalInvoker.invoke(args[1], Paths.get(args[2]), args[3], args[4], count);
+            System.exit(0);
         } else {
-            CamelRuntime camelRuntime = new CamelRuntime(8080);
+            CamelRuntime camelRuntime = new CamelRuntime(PORT);
             camelRuntime.start();
         }
     }
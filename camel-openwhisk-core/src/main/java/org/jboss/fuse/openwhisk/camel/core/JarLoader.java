@@ -17,25 +17,73 @@
 
 package org.jboss.fuse.openwhisk.camel.core;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 import org.apache.camel.builder.RouteBuilder;
 import org.jboss.fuse.openwhisk.camel.core.function.CamelFunction;
+import org.jboss.fuse.openwhisk.camel.core.support.StartupTimeline;
 
 public class JarLoader extends URLClassLoader {
 
+    static {
+        // the classes are loaded by the preloader and the action at the same time, locking each name separately
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final MemoryJar jar;
+    private final CodeSource codeSource;
+    private final Queue<String> definedClasses = new ConcurrentLinkedQueue<>();
     private final Class<?> mainClass;
     private final CamelFunction function;
 
     public JarLoader(Path jarPath, String entrypoint) throws Exception {
-        super(new URL[] { jarPath.toUri().toURL() });
+        this(new URL[] { jarPath.toUri().toURL() }, null, entrypoint, null);
+    }
+
+    /**
+     * Creates a loader which defines the given classes in the background
+     * while the action is started
+     */
+    JarLoader(Path jarPath, String entrypoint, List<String> classes) throws Exception {
+        this(new URL[] { jarPath.toUri().toURL() }, null, entrypoint, classes);
+    }
+
+    /**
+     * Creates a loader serving the classes and resources directly from the jar content
+     */
+    JarLoader(MemoryJar jar, String entrypoint, List<String> classes) throws Exception {
+        this(new URL[0], jar, entrypoint, classes);
+    }
+
+    private JarLoader(URL[] urls, MemoryJar jar, String entrypoint, List<String> classes) throws Exception {
+        super(urls);
+        this.jar = jar;
+        this.codeSource = jar != null ? new CodeSource(jar.getUrl(), (CodeSigner[]) null) : null;
+        if (classes != null && !classes.isEmpty()) {
+            preload(classes);
+        }
 
+        long start = System.nanoTime();
         this.mainClass = loadClass(entrypoint);
         Object instance = mainClass.getDeclaredConstructor().newInstance();
         RouteBuilder rb = RouteBuilder.class.cast(instance);
+        StartupTimeline.record(StartupTimeline.CLASS_LOAD, start);
         this.function = new CamelFunction();
         this.function.addRouteBuilder(rb);
         this.function.start();
@@ -45,4 +93,113 @@ public class JarLoader extends URLClassLoader {
         return function.execute(arg, env);
     }
 
+    /**
+     * Returns the names of the classes defined by this loader, in definition order
+     */
+    List<String> getDefinedClasses() {
+        return new ArrayList<>(definedClasses);
+    }
+
+    /**
+     * Returns the names of the resources of the action starting with the given prefix, sorted
+     */
+    List<String> getResourceNames(String prefix) throws IOException {
+        List<String> names;
+        if (jar != null) {
+            names = jar.list(prefix);
+        } else {
+            names = new ArrayList<>();
+            try (JarFile file = new JarFile(Paths.get(getURLs()[0].toURI()).toFile())) {
+                Enumeration<JarEntry> entries = file.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.startsWith(prefix) && !name.endsWith("/")) {
+                        names.add(name);
+                    }
+                }
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private void preload(final List<String> classes) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (String name : classes) {
+                    try {
+                        Class.forName(name, false, JarLoader.this);
+                    } catch (Throwable t) {
+                        // the class will be loaded again when needed
+                    }
+                }
+            }
+        }, "ActionPreloader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Called with the lock of the class name held, so a class is only defined once
+     */
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        Class<?> clazz = jar != null ? findMemoryClass(name) : super.findClass(name);
+        definedClasses.add(name);
+        return clazz;
+    }
+
+    private Class<?> findMemoryClass(String name) throws ClassNotFoundException {
+        byte[] bytes;
+        try {
+            bytes = jar.read(name.replace('.', '/').concat(".class"));
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+        int idx = name.lastIndexOf('.');
+        if (idx > 0) {
+            definePackage(name.substring(0, idx));
+        }
+        return defineClass(name, bytes, 0, bytes.length, codeSource);
+    }
+
+    private void definePackage(String name) throws ClassNotFoundException {
+        if (getPackage(name) == null) {
+            try {
+                if (jar.getManifest() != null) {
+                    definePackage(name, jar.getManifest(), jar.getUrl());
+                } else {
+                    definePackage(name, null, null, null, null, null, null, null);
+                }
+            } catch (IllegalArgumentException e) {
+                // defined concurrently, by a class of the same package loaded under another lock
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    @Override
+    public URL findResource(String name) {
+        if (jar == null) {
+            return super.findResource(name);
+        }
+        return jar.getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        if (jar == null) {
+            return super.findResources(name);
+        }
+        URL url = jar.getResource(name);
+        return url != null ? Collections.enumeration(Collections.singletonList(url)) : Collections.<URL>emptyEnumeration();
+    }
+
 }
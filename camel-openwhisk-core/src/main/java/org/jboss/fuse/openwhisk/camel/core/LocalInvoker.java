@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A stand-in for the invoker, sending the /init and /run requests of an action
+ * over a single connection to a runtime listening on a TCP port or a Unix domain socket.
+ */
+class LocalInvoker implements Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(LocalInvoker.class);
+
+    private final SocketChannel channel;
+    private final InputStream input;
+    private final String host;
+
+    /**
+     * @param address <code>host:port</code>, or the path of a Unix domain socket
+     */
+    LocalInvoker(String address) throws IOException {
+        SocketAddress socketAddress;
+        int idx = address.lastIndexOf(':');
+        if (idx > 0 && address.indexOf('/') < 0 && address.substring(idx + 1).matches("[0-9]+")) {
+            socketAddress = new InetSocketAddress(address.substring(0, idx), Integer.parseInt(address.substring(idx + 1)));
+            host = address;
+        } else {
+            socketAddress = NioHttpServer.unixAddress(Paths.get(address));
+            host = "localhost";
+        }
+        this.channel = NioHttpServer.connect(socketAddress);
+        this.input = new BufferedInputStream(Channels.newInputStream(channel));
+    }
+
+    /**
+     * Initializes the action and runs it <code>count</code> times with the given payload
+     */
+    static void invoke(String address, Path jar, String main, String payload, int count) throws IOException {
+        try (LocalInvoker invoker = new LocalInvoker(address)) {
+            String code = Base64.getEncoder().encodeToString(Files.readAllBytes(jar));
+            String init = "{\"value\":{\"main\":\"" + main + "\",\"binary\":true,\"code\":\"" + code + "\"}}";
+            System.out.println(invoker.post("/init", init));
+            String run = "{\"value\":" + ActionTrainer.readPayload(payload) + ",\"activation_id\":\"local\"}";
+            String response = null;
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                long start = System.nanoTime();
+                response = invoker.post("/run", run);
+                long duration = System.nanoTime() - start;
+                min = Math.min(min, duration);
+                max = Math.max(max, duration);
+                total += duration;
+            }
+            System.out.println(response);
+            if (count > 0) {
+                invoker.log.info("{} runs: min {} us, avg {} us, max {} us",
+                        count, min / 1000, total / count / 1000, max / 1000);
+            }
+        }
+    }
+
+    /**
+     * Sends a request and returns the body of the response
+     */
+    String post(String path, String body) throws IOException {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        String head = "POST " + path + " HTTP/1.1\r\nHost: " + host
+                + "\r\nContent-Type: application/json\r\nContent-Length: " + content.length + "\r\n\r\n";
+        ByteBuffer[] buffers = {
+                ByteBuffer.wrap(head.getBytes(StandardCharsets.ISO_8859_1)),
+                ByteBuffer.wrap(content) };
+        while (buffers[1].hasRemaining()) {
+            channel.write(buffers);
+        }
+
+        String status = readLine();
+        int length = -1;
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            if (line.toLowerCase(Locale.ENGLISH).startsWith("content-length:")) {
+                length = Integer.parseInt(line.substring("content-length:".length()).trim());
+            }
+        }
+        if (length < 0) {
+            throw new IOException("Missing content length in response to " + path + ": " + status);
+        }
+        byte[] response = new byte[length];
+        for (int read = 0, nb; read < length; read += nb) {
+            nb = input.read(response, read, length - read);
+            if (nb < 0) {
+                throw new EOFException("Unexpected end of response to " + path);
+            }
+        }
+        return new String(response, StandardCharsets.UTF_8);
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = input.read()) != '\n') {
+            if (c < 0) {
+                throw new EOFException("Connection closed by the runtime");
+            }
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        return line.toString("ISO-8859-1");
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * An index over a jar held in memory.
+ *
+ * Only the central directory is parsed up front, entries are inflated
+ * when they are read.  Zip64 archives are not supported.
+ *
+ * The package scan of camel only finds classes in <code>file:</code> and
+ * <code>jar:</code> urls, so a jar listing type converters must be loaded
+ * from a file instead.
+ */
+final class MemoryJar {
+
+    static final String TYPE_CONVERTER_SERVICE = "META-INF/services/org/apache/camel/TypeConverter";
+
+    private static final int END_HEADER = 0x06054b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int END_HEADER_SIZE = 22;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private final byte[] data;
+    private final Map<String, Entry> entries;
+    private final URLStreamHandler handler;
+    private final URL url;
+    private Manifest manifest;
+    private boolean manifestRead;
+
+    MemoryJar(byte[] data) throws IOException {
+        this.data = data;
+        this.handler = new Handler();
+        this.url = new URL("memory", "", -1, "/useraction.jar", handler);
+        this.entries = readCentralDirectory();
+    }
+
+    /**
+     * The url of the jar, used as the code source of its classes
+     */
+    URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the content of the given entry, or <code>null</code> if it does not exist
+     */
+    byte[] read(String name) throws IOException {
+        Entry entry = entries.get(name);
+        return entry != null ? inflate(name, entry) : null;
+    }
+
+    /**
+     * Returns the url of the given entry, or <code>null</code> if it does not exist
+     */
+    URL getResource(String name) {
+        if (!entries.containsKey(name)) {
+            return null;
+        }
+        try {
+            return new URL("memory", "", -1, "/useraction.jar!/" + name, handler);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether the jar names packages of type converters, which camel would scan for
+     */
+    boolean hasTypeConverters() {
+        return entries.containsKey(TYPE_CONVERTER_SERVICE);
+    }
+
+    /**
+     * Returns the names of the entries starting with the given prefix
+     */
+    List<String> list(String prefix) {
+        List<String> names = new ArrayList<>();
+        for (String name : entries.keySet()) {
+            if (name.startsWith(prefix) && !name.endsWith("/")) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    synchronized Manifest getManifest() throws IOException {
+        if (!manifestRead) {
+            manifestRead = true;
+            byte[] content = read("META-INF/MANIFEST.MF");
+            if (content != null) {
+                manifest = new Manifest(new ByteArrayInputStream(content));
+            }
+        }
+        return manifest;
+    }
+
+    private Map<String, Entry> readCentralDirectory() throws IOException {
+        int end = data.length - END_HEADER_SIZE;
+        // the end header is followed by a comment of at most 64k
+        int min = Math.max(0, end - 0xFFFF);
+        while (end >= min && readInt(end) != END_HEADER) {
+            end--;
+        }
+        if (end < min) {
+            throw new ZipException("End of central directory not found");
+        }
+        int count = readShort(end + 10);
+        long offset = readInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+            throw new ZipException("Zip64 archives are not supported");
+        }
+        Map<String, Entry> entries = new HashMap<>(count * 4 / 3 + 1);
+        int pos = (int) offset;
+        for (int i = 0; i < count; i++) {
+            if (pos + 46 > data.length || readInt(pos) != CENTRAL_HEADER) {
+                throw new ZipException("Invalid central directory header");
+            }
+            int method = readShort(pos + 10);
+            long compressed = readInt(pos + 20) & 0xFFFFFFFFL;
+            long size = readInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = readShort(pos + 28);
+            int extraLength = readShort(pos + 30);
+            int commentLength = readShort(pos + 32);
+            long header = readInt(pos + 42) & 0xFFFFFFFFL;
+            if (compressed == 0xFFFFFFFFL || size == 0xFFFFFFFFL || header == 0xFFFFFFFFL) {
+                throw new ZipException("Zip64 archives are not supported");
+            }
+            if (method != STORED && method != DEFLATED) {
+                throw new ZipException("Unsupported compression method " + method);
+            }
+            String name = new String(data, pos + 46, nameLength, StandardCharsets.UTF_8);
+            entries.put(name, new Entry(method, (int) header, (int) compressed, (int) size));
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    private byte[] inflate(String name, Entry entry) throws IOException {
+        int header = entry.header;
+        if (header + 30 > data.length || readInt(header) != LOCAL_HEADER) {
+            throw new ZipException("Invalid local header for " + name);
+        }
+        int offset = header + 30 + readShort(header + 26) + readShort(header + 28);
+        if (offset + entry.compressed > data.length) {
+            throw new ZipException("Truncated entry " + name);
+        }
+        byte[] content = new byte[entry.size];
+        if (entry.method == STORED) {
+            System.arraycopy(data, offset, content, 0, entry.size);
+            return content;
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, offset, entry.compressed);
+            int length = 0;
+            while (length < content.length) {
+                int nb = inflater.inflate(content, length, content.length - length);
+                if (nb == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += nb;
+            }
+            if (length != content.length) {
+                throw new ZipException("Invalid size for entry " + name);
+            }
+            return content;
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid content for entry " + name + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private int readShort(int pos) {
+        return (data[pos] & 0xFF) | (data[pos + 1] & 0xFF) << 8;
+    }
+
+    private int readInt(int pos) {
+        return readShort(pos) | readShort(pos + 2) << 16;
+    }
+
+    private static final class Entry {
+        final int method;
+        final int header;
+        final int compressed;
+        final int size;
+
+        Entry(int method, int header, int compressed, int size) {
+            this.method = method;
+            this.header = header;
+            this.compressed = compressed;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Serves the entries of this jar to code using {@link URL#openStream()}
+     */
+    private final class Handler extends URLStreamHandler {
+        @Override
+        protected URLConnection openConnection(URL u) throws IOException {
+            String path = u.getPath();
+            int idx = path.indexOf("!/");
+            final String name = idx >= 0 ? path.substring(idx + 2) : null;
+            return new URLConnection(u) {
+                private byte[] content;
+
+                @Override
+                public void connect() throws IOException {
+                    if (!connected) {
+                        content = name != null ? read(name) : data;
+                        if (content == null) {
+                            throw new FileNotFoundException(url.toString());
+                        }
+                        connected = true;
+                    }
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    connect();
+                    return new ByteArrayInputStream(content);
+                }
+
+                @Override
+                public long getContentLengthLong() {
+                    try {
+                        connect();
+                        return content.length;
+                    } catch (IOException e) {
+                        return -1;
+                    }
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,689 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.jboss.fuse.openwhisk.camel.core.json.JsonWriter;
+import org.jboss.fuse.openwhisk.camel.core.json.Utf8JsonReader;
+import org.jboss.fuse.openwhisk.camel.core.json.Utf8Output;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A minimal HTTP/1.1 server only serving the /init and /run requests of the invoker.
+ *
+ * Idle connections are kept open and watched by a selector, without holding a thread
+ * or a buffer.  When a request arrives, the connection is served in blocking mode,
+ * either by the selector thread itself or by the executor in concurrent mode: the head
+ * is parsed in place in a pooled direct buffer and the body is copied into an array
+ * which is handed directly to the JSON parser.  The array grows as the body arrives,
+ * rather than being sized from the announced length.  As with the JDK server, the
+ * responses larger than {@link Utf8JsonReader#MAX_POOLED_BUFFER_SIZE} are sent with
+ * chunked encoding instead of being buffered.
+ *
+ * Chunked request bodies are not supported, as the invoker always sends the length
+ * of the requests.
+ */
+final class NioHttpServer {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final int DEFAULT_BODY_SIZE = 8192;
+
+    private static final Queue<ByteBuffer> BUFFERS = new ConcurrentLinkedQueue<>();
+
+    private final Logger log = LoggerFactory.getLogger(NioHttpServer.class);
+
+    private final CamelRuntime runtime;
+    private final String name;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Queue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private Executor executor;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    NioHttpServer(SocketAddress address, CamelRuntime runtime) throws IOException {
+        this.runtime = runtime;
+        this.name = address instanceof InetSocketAddress ? "HTTP-Dispatcher" : "Unix-Dispatcher";
+        this.server = address instanceof InetSocketAddress
+                ? ServerSocketChannel.open() : (ServerSocketChannel) invoke(ServerSocketChannel.class, "open", unixFamily());
+        this.server.bind(address);
+        this.server.configureBlocking(false);
+        this.selector = Selector.open();
+        this.server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Sets the executor serving the requests, or <code>null</code> to
+     * serve them one at a time on the dispatcher thread
+     */
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    InetSocketAddress getAddress() {
+        return (InetSocketAddress) server.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * Returns the address of the Unix domain socket at the given path
+     *
+     * @throws IllegalStateException if the JVM does not support Unix domain sockets
+     */
+    static SocketAddress unixAddress(Path path) {
+        try {
+            Class<?> clazz = Class.forName("java.net.UnixDomainSocketAddress");
+            return (SocketAddress) clazz.getMethod("of", Path.class).invoke(null, path);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Unix domain sockets require Java 16 or later");
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create the Unix domain socket address", e);
+        }
+    }
+
+    /**
+     * Opens a channel connected to the given TCP or Unix domain socket address
+     */
+    static SocketChannel connect(SocketAddress address) throws IOException {
+        SocketChannel channel = address instanceof InetSocketAddress
+                ? SocketChannel.open() : (SocketChannel) invoke(SocketChannel.class, "open", unixFamily());
+        try {
+            channel.connect(address);
+        } catch (IOException e) {
+            close(channel);
+            throw e;
+        }
+        return channel;
+    }
+
+    private static ProtocolFamily unixFamily() {
+        return StandardProtocolFamily.valueOf("UNIX");
+    }
+
+    private static Object invoke(Class<?> clazz, String method, ProtocolFamily family) throws IOException {
+        try {
+            return clazz.getMethod(method, ProtocolFamily.class).invoke(null, family);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to open a Unix domain socket", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unix domain sockets require Java 16 or later", e);
+        }
+    }
+
+    void start() {
+        running = true;
+        dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, name);
+        dispatcher.start();
+    }
+
+    void stop() {
+        running = false;
+        selector.wakeup();
+        if (dispatcher != null && dispatcher != Thread.currentThread()) {
+            try {
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void dispatch() {
+        List<Connection> ready = new ArrayList<>();
+        try {
+            while (running) {
+                selector.select();
+                Connection connection;
+                while ((connection = idle.poll()) != null) {
+                    connection.register();
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        key.cancel();
+                        ready.add((Connection) key.attachment());
+                    }
+                }
+                selector.selectedKeys().clear();
+                if (!ready.isEmpty()) {
+                    // the cancelled keys must be deregistered before switching to blocking mode
+                    selector.selectNow();
+                    for (Connection c : ready) {
+                        serve(c);
+                    }
+                    ready.clear();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error in the HTTP dispatcher", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                close(key.channel());
+            }
+            Connection connection;
+            while ((connection = idle.poll()) != null) {
+                connection.close();
+            }
+            close(selector);
+            close(server);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            if (channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+        }
+    }
+
+    private void serve(Connection connection) {
+        try {
+            connection.channel.configureBlocking(true);
+        } catch (IOException e) {
+            connection.close();
+            return;
+        }
+        if (executor == null) {
+            connection.run();
+        } else {
+            try {
+                executor.execute(connection);
+            } catch (RejectedExecutionException e) {
+                connection.close();
+            }
+        }
+    }
+
+    private static ByteBuffer acquire() {
+        ByteBuffer buffer = BUFFERS.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static void release(ByteBuffer buffer) {
+        BUFFERS.offer(buffer);
+    }
+
+    private static void close(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    private static String reason(int code) {
+        switch (code) {
+            case 200: return "OK";
+            case 400: return "Bad Request";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 431: return "Request Header Fields Too Large";
+            case 501: return "Not Implemented";
+            case 502: return "Bad Gateway";
+            case 503: return "Service Unavailable";
+            default: return "Unknown";
+        }
+    }
+
+    /**
+     * A connection, which serves the requests available and then goes back to the selector
+     */
+    private final class Connection implements Runnable, CamelRuntime.Request {
+
+        private final SocketChannel channel;
+        private ByteBuffer in;
+        private byte[] body;
+        private int length;
+        private boolean keepAlive;
+        private boolean http11;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (in == null) {
+                    in = acquire();
+                    in.flip();
+                }
+                do {
+                    if (!serveRequest()) {
+                        close();
+                        return;
+                    }
+                } while (in.hasRemaining());
+                release(in);
+                in = null;
+                channel.configureBlocking(false);
+                idle.add(this);
+                selector.wakeup();
+            } catch (IOException e) {
+                log.debug("Error on connection {}", channel, e);
+                close();
+            }
+        }
+
+        void register() {
+            try {
+                if (running) {
+                    channel.register(selector, SelectionKey.OP_READ, this);
+                    return;
+                }
+            } catch (IOException e) {
+                // closed by the client
+            }
+            close();
+        }
+
+        void close() {
+            if (in != null) {
+                release(in);
+                in = null;
+            }
+            NioHttpServer.close(channel);
+        }
+
+        /**
+         * Reads and handles a request, returning <code>false</code> if the connection must be closed
+         */
+        private boolean serveRequest() throws IOException {
+            int end;
+            while ((end = findHeadEnd()) < 0) {
+                if (in.remaining() == in.capacity()) {
+                    keepAlive = false;
+                    respond(431, Collections.singletonMap("error", "Request header too large"));
+                    return false;
+                }
+                in.compact();
+                int nb = channel.read(in);
+                in.flip();
+                if (nb < 0) {
+                    return false;
+                }
+            }
+
+            // request line
+            int pos = in.position();
+            int lineEnd = indexOf('\r', pos, end);
+            if (lineEnd < 0) {
+                // no header lines, the head ends with the request line
+                lineEnd = end;
+            }
+            int sp1 = indexOf(' ', pos, lineEnd);
+            int sp2 = indexOf(' ', sp1 + 1, lineEnd);
+            if (sp1 < 0 || sp2 < 0) {
+                in.position(end + 4);
+                keepAlive = false;
+                respond(400, Collections.singletonMap("error", "Invalid request line"));
+                return false;
+            }
+            boolean post = equalsIgnoreCase(pos, sp1, "POST");
+            boolean init = matches(sp1 + 1, sp2, "/init");
+            boolean run = !init && matches(sp1 + 1, sp2, "/run");
+            http11 = !equalsIgnoreCase(sp2 + 1, lineEnd, "HTTP/1.0");
+            keepAlive = http11;
+
+            // headers
+            long contentLength = 0;
+            boolean chunked = false;
+            boolean expectContinue = false;
+            for (pos = lineEnd + 2; pos < end; pos = lineEnd + 2) {
+                lineEnd = indexOf('\r', pos, end);
+                if (lineEnd < 0) {
+                    lineEnd = end;
+                }
+                int colon = indexOf(':', pos, lineEnd);
+                if (colon < 0) {
+                    continue;
+                }
+                int value = colon + 1;
+                while (value < lineEnd && in.get(value) == ' ') {
+                    value++;
+                }
+                int valueEnd = lineEnd;
+                while (valueEnd > value && in.get(valueEnd - 1) == ' ') {
+                    valueEnd--;
+                }
+                if (equalsIgnoreCase(pos, colon, "Content-Length")) {
+                    contentLength = parseLength(value, valueEnd);
+                } else if (equalsIgnoreCase(pos, colon, "Connection")) {
+                    if (equalsIgnoreCase(value, valueEnd, "close")) {
+                        keepAlive = false;
+                    } else if (equalsIgnoreCase(value, valueEnd, "keep-alive")) {
+                        keepAlive = true;
+                    }
+                } else if (equalsIgnoreCase(pos, colon, "Transfer-Encoding")) {
+                    // chunked is always the last coding when present
+                    chunked = endsWithIgnoreCase(value, valueEnd, "chunked");
+                } else if (equalsIgnoreCase(pos, colon, "Expect")) {
+                    expectContinue = equalsIgnoreCase(value, valueEnd, "100-continue");
+                }
+            }
+            in.position(end + 4);
+            if (chunked) {
+                keepAlive = false;
+                respond(501, Collections.singletonMap("error", "Chunked requests are not supported"));
+                return false;
+            }
+            if (contentLength < 0 || contentLength > Integer.MAX_VALUE - 8) {
+                keepAlive = false;
+                respond(400, Collections.singletonMap("error", "Invalid content length"));
+                return false;
+            }
+
+            // body
+            length = (int) contentLength;
+            int size = Math.min(length, Utf8JsonReader.MAX_POOLED_BUFFER_SIZE);
+            if (body == null || body.length < size) {
+                body = new byte[Math.max(size, DEFAULT_BODY_SIZE)];
+            }
+            int read = Math.min(in.remaining(), length);
+            in.get(body, 0, read);
+            if (read < length && expectContinue) {
+                ByteBuffer out = acquire();
+                putAscii(out, "HTTP/1.1 100 Continue\r\n\r\n");
+                write(out);
+                release(out);
+            }
+            while (read < length) {
+                in.clear();
+                int nb = channel.read(in);
+                in.flip();
+                if (nb < 0) {
+                    throw new EOFException("Unexpected end of request body");
+                }
+                int nb2 = Math.min(in.remaining(), length - read);
+                if (read + nb2 > body.length) {
+                    body = Arrays.copyOf(body, (int) Math.min(Math.max(2L * body.length, read + nb2), length));
+                }
+                in.get(body, read, nb2);
+                read += nb2;
+            }
+
+            if (!init && !run) {
+                respond(404, Collections.singletonMap("error", "Not found"));
+            } else if (!post) {
+                respond(405, Collections.singletonMap("error", "Method not allowed"));
+            } else if (init) {
+                runtime.init(this);
+            } else {
+                runtime.run(this);
+            }
+            if (body.length > Utf8JsonReader.MAX_POOLED_BUFFER_SIZE) {
+                body = null;
+            }
+            return keepAlive;
+        }
+
+        @Override
+        public ByteBuffer getBody(boolean pooled) {
+            return pooled ? ByteBuffer.wrap(body, 0, length) : ByteBuffer.wrap(Arrays.copyOf(body, length));
+        }
+
+        @Override
+        public void respond(int code, Object content) throws IOException {
+            Utf8Output output = Utf8Output.acquire();
+            ChunkedStream stream = null;
+            if (http11) {
+                // large responses are sent using chunked encoding instead of being buffered
+                stream = new ChunkedStream(code);
+                output.setSpill(stream);
+            }
+            try {
+                JsonWriter.write(output, content);
+                if (output.isSpilled()) {
+                    output.flush();
+                    stream.finish();
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                if (output.isSpilled()) {
+                    // a successful status has been sent, so the client must see a broken response instead of an error
+                    keepAlive = false;
+                    throw new CamelRuntime.ResponseAbortedException(e);
+                }
+                throw e;
+            } finally {
+                if (stream != null) {
+                    stream.release();
+                }
+            }
+            ByteBuffer out = acquire();
+            try {
+                putAscii(out, "HTTP/1.1 " + code + " " + reason(code)
+                        + "\r\nContent-Type: application/json\r\nContent-Length: " + output.size()
+                        + (keepAlive ? "\r\n\r\n" : "\r\nConnection: close\r\n\r\n"));
+                put(out, output.array(), 0, output.size());
+                write(out);
+            } finally {
+                release(out);
+            }
+        }
+
+        /**
+         * Puts the bytes into the buffer, writing it each time it is full
+         */
+        private void put(ByteBuffer out, byte[] bytes, int off, int len) throws IOException {
+            while (true) {
+                int nb = Math.min(out.remaining(), len);
+                out.put(bytes, off, nb);
+                off += nb;
+                len -= nb;
+                if (len == 0) {
+                    break;
+                }
+                write(out);
+            }
+        }
+
+        private void write(ByteBuffer out) throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+
+        private void putAscii(ByteBuffer out, String s) {
+            for (int i = 0; i < s.length(); i++) {
+                out.put((byte) s.charAt(i));
+            }
+        }
+
+        private int findHeadEnd() {
+            for (int i = in.position(), limit = in.limit() - 3; i < limit; i++) {
+                if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int indexOf(char c, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (in.get(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Checks if the request path is the given one, ignoring the query string
+         */
+        private boolean matches(int from, int to, String path) {
+            int query = indexOf('?', from, to);
+            if (query >= 0) {
+                to = query;
+            }
+            if (to - from != path.length()) {
+                return false;
+            }
+            for (int i = 0; i < path.length(); i++) {
+                if (in.get(from + i) != path.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean equalsIgnoreCase(int from, int to, String s) {
+            if (to - from != s.length()) {
+                return false;
+            }
+            for (int i = 0; i < s.length(); i++) {
+                int b = in.get(from + i);
+                int c = s.charAt(i);
+                if (b != c && (b | 0x20) != (c | 0x20)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean endsWithIgnoreCase(int from, int to, String s) {
+            return to - from >= s.length() && equalsIgnoreCase(to - s.length(), to, s);
+        }
+
+        /**
+         * Sends the content written to it as the chunks of a response, once opened by the {@link Utf8Output}
+         */
+        private final class ChunkedStream extends OutputStream implements Utf8Output.Spill {
+
+            private final int code;
+            private ByteBuffer out;
+
+            ChunkedStream(int code) {
+                this.code = code;
+            }
+
+            @Override
+            public OutputStream open() {
+                out = acquire();
+                putAscii(out, "HTTP/1.1 " + code + " " + reason(code)
+                        + "\r\nContent-Type: application/json\r\nTransfer-Encoding: chunked"
+                        + (keepAlive ? "\r\n\r\n" : "\r\nConnection: close\r\n\r\n"));
+                return this;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    // an empty chunk would end the response
+                    return;
+                }
+                if (out.remaining() < 16) {
+                    Connection.this.write(out);
+                }
+                putAscii(out, Integer.toHexString(len) + "\r\n");
+                put(out, b, off, len);
+                if (out.remaining() < 2) {
+                    Connection.this.write(out);
+                }
+                putAscii(out, "\r\n");
+            }
+
+            @Override
+            public void flush() throws IOException {
+                Connection.this.write(out);
+            }
+
+            void finish() throws IOException {
+                if (out.remaining() < 5) {
+                    Connection.this.write(out);
+                }
+                putAscii(out, "0\r\n\r\n");
+                Connection.this.write(out);
+            }
+
+            void release() {
+                if (out != null) {
+                    NioHttpServer.release(out);
+                    out = null;
+                }
+            }
+        }
+
+        private long parseLength(int from, int to) {
+            if (from == to || to - from > 18) {
+                return -1;
+            }
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                int d = in.get(i) - '0';
+                if (d < 0 || d > 9) {
+                    return -1;
+                }
+                value = value * 10 + d;
+            }
+            return value;
+        }
+    }
+
+}
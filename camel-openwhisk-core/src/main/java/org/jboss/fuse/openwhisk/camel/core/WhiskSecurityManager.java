@@ -18,14 +18,90 @@
 package org.jboss.fuse.openwhisk.camel.core;
 
 import java.security.Permission;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A `SecurityManager` installed when executing action code. The purpose here
  * is not so much to prevent malicious behavior than it is to prevent users from
  * shooting themselves in the foot. In particular, anything that kills the JVM
  * will result in unhelpful action error messages.
+ *
+ * The security manager is installed once and only checks the threads running
+ * an activation, so that concurrent activations do not have to swap it.  On JDKs
+ * which do not allow installing a security manager, exits cannot be prevented, and
+ * a shutdown hook only reports those called by a thread running an activation.
  */
 public class WhiskSecurityManager extends SecurityManager {
+
+    private static final ThreadLocal<Boolean> IN_ACTION = new ThreadLocal<>();
+
+    /**
+     * The threads running an activation, looked up by the shutdown hook
+     */
+    private static final Set<Thread> RUNNING = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+    private static boolean installed;
+
+    /**
+     * Installs the security manager, or the shutdown hook if the JDK
+     * does not allow it.  Subsequent calls do nothing.
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        try {
+            System.setSecurityManager(new WhiskSecurityManager());
+        } catch (UnsupportedOperationException | SecurityException e) {
+            Logger log = LoggerFactory.getLogger(WhiskSecurityManager.class);
+            log.warn("Unable to install the security manager, exits from actions cannot be prevented: " + e.getMessage());
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // the exiting thread waits in Shutdown.exit() while the hooks run,
+                    // unlike a signal which exits from a thread of its own
+                    if (isExiting(RUNNING)) {
+                        System.err.println("System.exit() called from within an action.");
+                        System.out.println(ActivationLog.SENTINEL);
+                        System.err.println(ActivationLog.SENTINEL);
+                        System.out.flush();
+                        System.err.flush();
+                    }
+                }
+            }, "WhiskExitGuard"));
+        }
+    }
+
+    /**
+     * Marks the current thread as running action code
+     */
+    public static void enterAction() {
+        IN_ACTION.set(Boolean.TRUE);
+        RUNNING.add(Thread.currentThread());
+    }
+
+    public static void exitAction() {
+        RUNNING.remove(Thread.currentThread());
+        IN_ACTION.remove();
+    }
+
+    private static boolean isExiting(Set<Thread> threads) {
+        for (Thread thread : threads) {
+            for (StackTraceElement element : thread.getStackTrace()) {
+                if ("java.lang.Shutdown".equals(element.getClassName()) && "exit".equals(element.getMethodName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public void checkPermission(Permission p) {
         // Not throwing means accepting anything.
@@ -38,7 +114,8 @@ public class WhiskSecurityManager extends SecurityManager {
 
     @Override
     public void checkExit(int status) {
-        super.checkExit(status);
-        throw new SecurityException("System.exit(" + status + ") called from within an action.");
+        if (IN_ACTION.get() != null) {
+            throw new SecurityException("System.exit(" + status + ") called from within an action.");
+        }
     }
 }
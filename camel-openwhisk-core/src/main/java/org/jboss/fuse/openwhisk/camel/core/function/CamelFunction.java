@@ -7,6 +7,7 @@ import org.apache.camel.CamelContext;
 import org.apache.camel.ProducerTemplate;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.component.direct.DirectComponent;
+import org.apache.camel.impl.DefaultCamelContext;
 import org.apache.camel.impl.SimpleRegistry;
 import org.apache.camel.language.simple.SimpleLanguage;
 import org.apache.camel.model.FromDefinition;
@@ -19,11 +20,17 @@ import org.apache.camel.model.language.ExpressionDefinition;
 import org.apache.camel.util.IntrospectionSupport;
 import org.jboss.fuse.openwhisk.camel.api.CamelFunctionRouteBuilder;
 import org.jboss.fuse.openwhisk.camel.core.support.FastCamelContext;
+import org.jboss.fuse.openwhisk.camel.core.support.StartupTimeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class CamelFunction {
 
+    /**
+     * The Camel context created by the functions: <code>fast</code> or <code>default</code>
+     */
+    public static final String CONTEXT = System.getProperty("camel.openwhisk.context", "fast");
+
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
     protected final SimpleRegistry registry;
@@ -49,11 +56,13 @@ public class CamelFunction {
     }
 
     public CamelFunction() {
+        long start = System.nanoTime();
         registry = new SimpleRegistry();
         camelContext = createContext();
         camelTemplate = camelContext.createProducerTemplate();
         bind("function", new DirectComponent());
         bind("simple", new SimpleLanguage());
+        StartupTimeline.record(StartupTimeline.CONTEXT_CREATE, start);
     }
 
     /**
@@ -98,7 +107,10 @@ public class CamelFunction {
     }
 
     public void start() throws Exception {
+        // recorded here so that the default context is measured too
+        long start = System.nanoTime();
         getCamelContext().start();
+        StartupTimeline.record(StartupTimeline.CONTEXT_START, start);
     }
 
     public void stop() throws Exception {
@@ -109,13 +121,19 @@ public class CamelFunction {
         if (routeBuilder instanceof CamelFunctionRouteBuilder) {
             ((CamelFunctionRouteBuilder) routeBuilder).setRegistry(registry);
         }
+        long start = System.nanoTime();
         routeBuilder.addRoutesToCamelContext(getCamelContext());
+        StartupTimeline.record(StartupTimeline.ROUTE_BUILD, start);
     }
 
     protected CamelContext createContext() {
-//        CamelContext context = new DefaultCamelContext(registry);       // 458 / 491
-        CamelContext context = new FastCamelContext(registry);          // 166 / 206
-        return context;
+        if ("default".equals(CONTEXT)) {
+            return new DefaultCamelContext(registry);       // 458 / 491
+        } else if ("fast".equals(CONTEXT)) {
+            return new FastCamelContext(registry);          // 166 / 206
+        } else {
+            throw new IllegalArgumentException("Unknown context: " + CONTEXT);
+        }
     }
 
 }
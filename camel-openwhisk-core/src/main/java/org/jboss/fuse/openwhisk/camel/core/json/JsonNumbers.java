@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.fuse.openwhisk.camel.core.json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Conversion of already validated JSON numbers.
+ *
+ * The digits are parsed in place.  Doubles are computed using the Clinger
+ * fast path when possible, then the Eisel-Lemire algorithm, and only fall
+ * back to {@link Double#parseDouble(String)} when the result can not be
+ * proven exact, which is very rare.
+ */
+final class JsonNumbers {
+
+    private static final int MAX_DIGITS = 19;
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private JsonNumbers() {
+    }
+
+    static Number parse(byte[] buffer, int begin, int end, NumberMode mode) {
+        return parse(buffer, null, begin, end, mode);
+    }
+
+    static Number parse(CharSequence chars, NumberMode mode) {
+        return parse(null, chars, 0, chars.length(), mode);
+    }
+
+    private static Number parse(byte[] bytes, CharSequence chars, int begin, int end, NumberMode mode) {
+        int i = begin;
+        boolean negative = charAt(bytes, chars, i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean truncated = false;
+        boolean dropped = false;
+        boolean integral = true;
+        int c = 0;
+        // integer part
+        for (; i < end; i++) {
+            c = charAt(bytes, chars, i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (digits < MAX_DIGITS) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+                dropped = true;
+                truncated |= c != '0';
+            }
+        }
+        // fraction
+        if (i < end && c == '.') {
+            integral = false;
+            for (i++; i < end; i++) {
+                c = charAt(bytes, chars, i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                if (digits < MAX_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                } else {
+                    dropped = true;
+                    truncated |= c != '0';
+                }
+            }
+        }
+        // exponent
+        if (i < end && (c == 'e' || c == 'E')) {
+            integral = false;
+            i++;
+            boolean negativeExponent = false;
+            c = charAt(bytes, chars, i);
+            if (c == '+' || c == '-') {
+                negativeExponent = c == '-';
+                i++;
+            }
+            int exp = 0;
+            for (; i < end; i++) {
+                c = charAt(bytes, chars, i);
+                if (exp < 100000) {
+                    exp = exp * 10 + (c - '0');
+                }
+            }
+            exponent += negativeExponent ? -exp : exp;
+        }
+
+        if (mode != NumberMode.DOUBLE && integral) {
+            if (exponent == 0 && !truncated) {
+                if (mantissa >= 0) {
+                    long value = negative ? -mantissa : mantissa;
+                    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                        return (int) value;
+                    }
+                    return value;
+                } else if (negative && mantissa == Long.MIN_VALUE) {
+                    return Long.MIN_VALUE;
+                }
+            }
+            return new BigInteger(text(bytes, chars, begin, end));
+        }
+        if (mode == NumberMode.BIG_DECIMAL) {
+            // the scale would be wrong if trailing zeros have been dropped
+            if (!dropped && mantissa >= 0) {
+                return BigDecimal.valueOf(negative ? -mantissa : mantissa, -exponent);
+            }
+            return new BigDecimal(text(bytes, chars, begin, end));
+        }
+        if (!truncated) {
+            double value = toDouble(negative, mantissa, exponent);
+            if (!Double.isNaN(value)) {
+                return value;
+            }
+        }
+        return Double.parseDouble(text(bytes, chars, begin, end));
+    }
+
+    private static int charAt(byte[] bytes, CharSequence chars, int i) {
+        return bytes != null ? bytes[i] : chars.charAt(i);
+    }
+
+    private static String text(byte[] bytes, CharSequence chars, int begin, int end) {
+        return bytes != null
+                ? new String(bytes, begin, end - begin, StandardCharsets.ISO_8859_1)
+                : chars.subSequence(begin, end).toString();
+    }
+
+    /**
+     * Computes <code>mantissa * 10^exponent</code> where the mantissa is an unsigned
+     * value, or returns <code>NaN</code> if the result can not be computed exactly.
+     */
+    static double toDouble(boolean negative, long mantissa, int exponent) {
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        // Clinger's fast path, both values are exact doubles
+        if (mantissa > 0 && mantissa <= 1L << 53 && exponent >= -22 && exponent <= 22) {
+            double d = (double) mantissa;
+            d = exponent < 0 ? d / POWERS_OF_TEN[-exponent] : d * POWERS_OF_TEN[exponent];
+            return negative ? -d : d;
+        }
+        if (exponent < PowersOfFive.MIN_EXPONENT) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (exponent > PowersOfFive.MAX_EXPONENT) {
+            return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        return eiselLemire(negative, mantissa, exponent);
+    }
+
+    private static double eiselLemire(boolean negative, long mantissa, int exponent) {
+        // normalization
+        int lz = Long.numberOfLeadingZeros(mantissa);
+        mantissa <<= lz;
+        long exp2 = ((217706L * exponent) >> 16) + 64 + 1023 - lz;
+
+        // multiplication
+        int index = exponent - PowersOfFive.MIN_EXPONENT;
+        long high = PowersOfFive.HIGH[index];
+        long xHi = multiplyHigh(mantissa, high);
+        long xLo = mantissa * high;
+
+        // wider approximation
+        if ((xHi & 0x1FF) == 0x1FF && Long.compareUnsigned(xLo + mantissa, mantissa) < 0) {
+            long low = PowersOfFive.LOW[index];
+            long yHi = multiplyHigh(mantissa, low);
+            long yLo = mantissa * low;
+            long mergedHi = xHi;
+            long mergedLo = xLo + yHi;
+            if (Long.compareUnsigned(mergedLo, xLo) < 0) {
+                mergedHi++;
+            }
+            if ((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0 && Long.compareUnsigned(yLo + mantissa, mantissa) < 0) {
+                return Double.NaN;
+            }
+            xHi = mergedHi;
+            xLo = mergedLo;
+        }
+
+        // shifting to 54 bits
+        long msb = xHi >>> 63;
+        long result = xHi >>> (msb + 9);
+        exp2 -= 1 ^ msb;
+
+        // half-way ambiguity
+        if (xLo == 0 && (xHi & 0x1FF) == 0 && (result & 3) == 1) {
+            return Double.NaN;
+        }
+
+        // from 54 to 53 bits
+        result += result & 1;
+        result >>>= 1;
+        if ((result >>> 53) > 0) {
+            result >>>= 1;
+            exp2++;
+        }
+        // subnormal numbers and infinity are left to the slow path
+        if (exp2 <= 0 || exp2 >= 0x7FF) {
+            return Double.NaN;
+        }
+        long bits = (exp2 << 52) | (result & 0x000FFFFFFFFFFFFFL);
+        if (negative) {
+            bits |= 0x8000000000000000L;
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * Returns the high 64 bits of the unsigned 128 bits product
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x0 = x & 0xFFFFFFFFL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xFFFFFFFFL;
+        long y1 = y >>> 32;
+        long p11 = x1 * y1;
+        long p01 = x0 * y1;
+        long p10 = x1 * y0;
+        long p00 = x0 * y0;
+        long middle = p10 + (p00 >>> 32) + (p01 & 0xFFFFFFFFL);
+        return p11 + (middle >>> 32) + (p01 >>> 32);
+    }
+
+    /**
+     * The 128 bits approximations of the powers of ten used by the
+     * Eisel-Lemire algorithm.  They are computed on first use only,
+     * as most numbers go through the fast path.
+     */
+    private static final class PowersOfFive {
+
+        static final int MIN_EXPONENT = -342;
+        static final int MAX_EXPONENT = 308;
+
+        static final long[] HIGH = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+        static final long[] LOW = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+
+        static {
+            BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+            BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+            for (int q = MIN_EXPONENT; q <= MAX_EXPONENT; q++) {
+                BigInteger c;
+                if (q < 0) {
+                    BigInteger power5 = BigInteger.valueOf(5).pow(-q);
+                    int z = power5.subtract(BigInteger.ONE).bitLength();
+                    int b = q >= -27 ? z + 127 : 2 * z + 128;
+                    c = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+                    while (c.compareTo(two128) >= 0) {
+                        c = c.shiftRight(1);
+                    }
+                } else {
+                    c = BigInteger.valueOf(5).pow(q);
+                    int bits = c.bitLength();
+                    c = bits < 128 ? c.shiftLeft(128 - bits) : c.shiftRight(bits - 128);
+                }
+                HIGH[q - MIN_EXPONENT] = c.shiftRight(64).longValue();
+                LOW[q - MIN_EXPONENT] = c.and(mask).longValue();
+            }
+        }
+    }
+
+}
@@ -38,12 +38,18 @@ public class JsonReader {
     protected final Reader reader;
     protected final StringBuilder recorder;
     protected final Deque<Object> stack = new ArrayDeque<>();
+    protected final NumberMode numberMode;
     protected int current;
     protected int line = 1;
     protected int column;
 
     protected JsonReader(Reader reader) {
+        this(reader, NumberMode.DOUBLE);
+    }
+
+    protected JsonReader(Reader reader, NumberMode numberMode) {
         this.reader = reader;
+        this.numberMode = numberMode;
         recorder = new StringBuilder();
     }
 
@@ -51,6 +57,10 @@ public class JsonReader {
         return new JsonReader(reader).parse();
     }
 
+    public static Object read(Reader reader, NumberMode numberMode) throws IOException {
+        return new JsonReader(reader, numberMode).parse();
+    }
+
     public static Object read(InputStream is) throws IOException {
         return new JsonReader(new InputStreamReader(is)).parse();
     }
@@ -177,6 +187,11 @@ public class JsonReader {
     }
 
     protected String readString() throws IOException {
+        recordString();
+        return recorder.toString();
+    }
+
+    private void recordString() throws IOException {
         read();
         recorder.setLength(0);
         while (current != '"') {
@@ -190,7 +205,6 @@ public class JsonReader {
             }
         }
         read();
-        return recorder.toString();
     }
 
     protected void readEscape() throws IOException {
@@ -247,7 +261,7 @@ public class JsonReader {
         }
         readFraction();
         readExponent();
-        return Double.parseDouble(recorder.toString());
+        return JsonNumbers.parse(recorder, numberMode);
     }
 
     protected boolean readFraction() throws IOException {
@@ -283,8 +297,8 @@ public class JsonReader {
         if (current != '"') {
             throw expected("name");
         }
-        readString();
-        return recorder.toString();
+        recordString();
+        return NameCache.get(recorder);
     }
 
     protected boolean readAndAppendChar(char ch) throws IOException {
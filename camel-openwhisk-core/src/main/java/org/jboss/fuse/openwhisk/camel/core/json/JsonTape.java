@@ -0,0 +1,459 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.fuse.openwhisk.camel.core.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A compact representation of a JSON document.
+ *
+ * The document is validated and indexed into a tape of <code>long</code>
+ * entries holding the type, offset and length of each token in the raw
+ * UTF-8 input.  Objects and arrays are exposed as {@link java.util.Map} and
+ * {@link java.util.List} views which only build their child values when
+ * they are accessed.
+ *
+ * The raw input is referenced by the views, so it must not be modified
+ * or reused while the document is in use.
+ */
+public final class JsonTape {
+
+    static final int OBJECT = 1;
+    static final int ARRAY = 2;
+    static final int END = 3;
+    static final int STRING = 4;
+    static final int ESCAPED_STRING = 5;
+    static final int NUMBER = 6;
+    static final int TRUE = 7;
+    static final int FALSE = 8;
+    static final int NULL = 9;
+
+    private static final int MAX_VALUE = (1 << 30) - 1;
+
+    final byte[] buffer;
+    private final NumberMode numberMode;
+    private final int start;
+    private final int limit;
+    private long[] tape = new long[64];
+    private int size;
+    private int index;
+
+    private JsonTape(byte[] buffer, int offset, int length, NumberMode numberMode) throws IOException {
+        if (offset + length > MAX_VALUE) {
+            throw new IOException("Document too large");
+        }
+        this.buffer = buffer;
+        this.numberMode = numberMode;
+        this.start = offset;
+        this.limit = offset + length;
+        this.index = offset;
+    }
+
+    /**
+     * Parses the given bytes.  The returned value is a lazy {@link java.util.Map}
+     * or {@link java.util.List} view for objects and arrays.
+     */
+    public static Object parse(byte[] buffer, int offset, int length) throws IOException {
+        return parse(buffer, offset, length, NumberMode.DOUBLE);
+    }
+
+    public static Object parse(byte[] buffer, int offset, int length, NumberMode numberMode) throws IOException {
+        JsonTape tape = new JsonTape(buffer, offset, length, numberMode);
+        tape.skipWhiteSpace();
+        tape.parseValue();
+        tape.skipWhiteSpace();
+        if (tape.index < tape.limit) {
+            throw tape.error("Unexpected character");
+        }
+        return tape.value(0);
+    }
+
+    public static Object parse(InputStream is, int contentLength) throws IOException {
+        return parse(is, contentLength, NumberMode.DOUBLE);
+    }
+
+    public static Object parse(InputStream is, int contentLength, NumberMode numberMode) throws IOException {
+        // the views keep a reference on the buffer, so it can not be a pooled one
+        ByteBuffer bb = Utf8JsonReader.readFully(is, contentLength, false);
+        return parse(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining(), numberMode);
+    }
+
+    //
+    // Tape access
+    //
+
+    int type(int i) {
+        return (int) (tape[i] >>> 60);
+    }
+
+    int first(int i) {
+        return (int) ((tape[i] >>> 30) & MAX_VALUE);
+    }
+
+    int second(int i) {
+        return (int) (tape[i] & MAX_VALUE);
+    }
+
+    /**
+     * Returns the index of the entry following the value at the given index
+     */
+    int next(int i) {
+        int type = type(i);
+        return type == OBJECT || type == ARRAY ? first(i) + 1 : i + 1;
+    }
+
+    Object value(int i) {
+        switch (type(i)) {
+        case OBJECT:
+            return new LazyJsonObject(this, i, second(i));
+        case ARRAY:
+            return new LazyJsonArray(this, i, second(i));
+        case STRING:
+            return new String(buffer, first(i), second(i), StandardCharsets.UTF_8);
+        case ESCAPED_STRING:
+            try {
+                // include the quotes
+                return new Utf8JsonReader(buffer, first(i) - 1, second(i) + 2).parse();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        case NUMBER:
+            return JsonNumbers.parse(buffer, first(i), first(i) + second(i), numberMode);
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        default:
+            return null;
+        }
+    }
+
+    String string(int i) {
+        return (String) value(i);
+    }
+
+    /**
+     * Returns the object name at the given index, using the shared
+     * name cache for short ASCII names.
+     */
+    String name(int i) {
+        if (type(i) == STRING && second(i) <= NameCache.MAX_LENGTH) {
+            int offset = first(i);
+            int length = second(i);
+            int hash = 0;
+            for (int j = 0; j < length; j++) {
+                byte b = buffer[offset + j];
+                if (b < 0) {
+                    return string(i);
+                }
+                hash = 31 * hash + b;
+            }
+            return NameCache.get(buffer, offset, length, hash);
+        }
+        return string(i);
+    }
+
+    /**
+     * Checks if the string at the given index is equal to the given key,
+     * without creating the string if possible.
+     */
+    boolean stringEquals(int i, String key) {
+        if (type(i) != STRING) {
+            return key.equals(value(i));
+        }
+        int offset = first(i);
+        int length = second(i);
+        if (length != key.length()) {
+            // only ASCII strings have the same number of bytes and chars
+            for (int j = 0; j < length; j++) {
+                if (buffer[offset + j] < 0) {
+                    return key.equals(value(i));
+                }
+            }
+            return false;
+        }
+        for (int j = 0; j < length; j++) {
+            byte b = buffer[offset + j];
+            if (b < 0) {
+                return key.equals(value(i));
+            }
+            if (b != key.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the raw bytes of the object or array at the given index
+     */
+    void writeRaw(int i, Utf8Output output) throws IOException {
+        int end = first(i);
+        int from = first(end);
+        int to = second(end);
+        output.write(buffer, from, to - from);
+    }
+
+    //
+    // Parsing
+    //
+
+    private int add(int type, int first, int second) {
+        if (size == tape.length) {
+            tape = Arrays.copyOf(tape, size * 2);
+        }
+        tape[size] = ((long) type << 60) | ((long) first << 30) | second;
+        return size++;
+    }
+
+    private void set(int i, int type, int first, int second) {
+        tape[i] = ((long) type << 60) | ((long) first << 30) | second;
+    }
+
+    private void parseValue() throws IOException {
+        if (index >= limit) {
+            throw error("Unexpected end of input");
+        }
+        switch (buffer[index]) {
+        case 'n':
+            parseLiteral("null", NULL);
+            break;
+        case 't':
+            parseLiteral("true", TRUE);
+            break;
+        case 'f':
+            parseLiteral("false", FALSE);
+            break;
+        case '"':
+            parseString();
+            break;
+        case '[':
+            parseArray();
+            break;
+        case '{':
+            parseObject();
+            break;
+        case '-':
+        case '0':
+        case '1':
+        case '2':
+        case '3':
+        case '4':
+        case '5':
+        case '6':
+        case '7':
+        case '8':
+        case '9':
+            parseNumber();
+            break;
+        default:
+            throw expected("value");
+        }
+    }
+
+    private void parseObject() throws IOException {
+        int begin = index++;
+        int pos = add(OBJECT, 0, 0);
+        int count = 0;
+        skipWhiteSpace();
+        if (!readChar('}')) {
+            do {
+                skipWhiteSpace();
+                if (index >= limit || buffer[index] != '"') {
+                    throw expected("name");
+                }
+                parseString();
+                skipWhiteSpace();
+                if (!readChar(':')) {
+                    throw expected("':'");
+                }
+                skipWhiteSpace();
+                parseValue();
+                count++;
+                skipWhiteSpace();
+            } while (readChar(','));
+            if (!readChar('}')) {
+                throw expected("',' or '}'");
+            }
+        }
+        int end = add(END, begin, index);
+        set(pos, OBJECT, end, count);
+    }
+
+    private void parseArray() throws IOException {
+        int begin = index++;
+        int pos = add(ARRAY, 0, 0);
+        int count = 0;
+        skipWhiteSpace();
+        if (!readChar(']')) {
+            do {
+                skipWhiteSpace();
+                parseValue();
+                count++;
+                skipWhiteSpace();
+            } while (readChar(','));
+            if (!readChar(']')) {
+                throw expected("',' or ']'");
+            }
+        }
+        int end = add(END, begin, index);
+        set(pos, ARRAY, end, count);
+    }
+
+    private void parseString() throws IOException {
+        int begin = ++index;
+        boolean escaped = false;
+        while (true) {
+            if (index >= limit) {
+                throw error("Unexpected end of input");
+            }
+            byte b = buffer[index];
+            if (b == '"') {
+                break;
+            } else if (b == '\\') {
+                escaped = true;
+                index++;
+                if (index >= limit) {
+                    throw error("Unexpected end of input");
+                }
+                switch (buffer[index]) {
+                case '"':
+                case '/':
+                case '\\':
+                case 'b':
+                case 'f':
+                case 'n':
+                case 'r':
+                case 't':
+                    break;
+                case 'u':
+                    for (int i = 0; i < 4; i++) {
+                        index++;
+                        if (index >= limit) {
+                            throw error("Unexpected end of input");
+                        }
+                        if (!JsonReader.isHexDigit(buffer[index])) {
+                            throw expected("hexadecimal digit");
+                        }
+                    }
+                    break;
+                default:
+                    throw expected("valid escape sequence");
+                }
+            } else if (b >= 0 && b < 0x20) {
+                throw expected("valid string character");
+            }
+            index++;
+        }
+        add(escaped ? ESCAPED_STRING : STRING, begin, index - begin);
+        index++;
+    }
+
+    private void parseNumber() throws IOException {
+        int begin = index;
+        readChar('-');
+        if (index >= limit) {
+            throw error("Unexpected end of input");
+        }
+        byte first = buffer[index];
+        if (!readDigit()) {
+            throw expected("digit");
+        }
+        if (first != '0') {
+            while (readDigit()) {
+                // Do nothing
+            }
+        }
+        if (readChar('.')) {
+            if (!readDigit()) {
+                throw expected("digit");
+            }
+            while (readDigit()) {
+                // Do nothing
+            }
+        }
+        if (readChar('e') || readChar('E')) {
+            if (!readChar('+')) {
+                readChar('-');
+            }
+            if (!readDigit()) {
+                throw expected("digit");
+            }
+            while (readDigit()) {
+                // Do nothing
+            }
+        }
+        add(NUMBER, begin, index - begin);
+    }
+
+    private void parseLiteral(String literal, int type) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (!readChar(literal.charAt(i))) {
+                throw expected("'" + literal.charAt(i) + "'");
+            }
+        }
+        add(type, 0, 0);
+    }
+
+    private boolean readChar(char ch) {
+        if (index < limit && buffer[index] == ch) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean readDigit() {
+        if (index < limit && buffer[index] >= '0' && buffer[index] <= '9') {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhiteSpace() {
+        while (index < limit && JsonReader.isWhiteSpace(buffer[index])) {
+            index++;
+        }
+    }
+
+    private IOException expected(String expected) {
+        if (index >= limit) {
+            return error("Unexpected end of input");
+        }
+        return error("Expected " + expected);
+    }
+
+    private IOException error(String message) {
+        int line = 1;
+        int column = 0;
+        for (int i = start; i < index && i < limit; i++) {
+            if (buffer[i] == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+        }
+        return new IOException(message + " at " + line + ":" + (column + 1));
+    }
+
+}
@@ -50,6 +50,18 @@ public final class JsonWriter {
         write(writer, value, indent);
     }
 
+    /**
+     * Writes the value as UTF-8 encoded bytes.
+     */
+    public static void write(Utf8Output output, Object value) throws IOException {
+        write(output, value, false);
+    }
+
+    public static void write(Utf8Output output, Object value, boolean format) throws IOException {
+        int indent = format ? 0 : -1;
+        write(output, value, indent);
+    }
+
     @SuppressWarnings("rawtypes")
     private static void write(Writer writer, Object value, int indent) throws IOException {
         if (value instanceof Map) {
@@ -162,7 +174,7 @@ public final class JsonWriter {
             if (indent >= 0) {
                 indent(writer, indent + 1);
             }
-            write(writer, obj, indent + 1);
+            write(writer, obj, indent >= 0 ? indent + 1 : -1);
         }
         if (indent >= 0) {
             indent(writer, indent);
@@ -174,6 +186,141 @@ public final class JsonWriter {
         writer.append("null");
     }
 
+    @SuppressWarnings("rawtypes")
+    private static void write(Utf8Output output, Object value, int indent) throws IOException {
+        if (indent < 0 && value instanceof LazyJsonObject && ((LazyJsonObject) value).writeRaw(output)) {
+            return;
+        } else if (indent < 0 && value instanceof LazyJsonArray && ((LazyJsonArray) value).writeRaw(output)) {
+            return;
+        }
+        if (value instanceof Map) {
+            writeObject(output, (Map) value, indent);
+        } else if (value instanceof Collection) {
+            writeArray(output, (Collection) value, indent);
+        } else if (value instanceof Number) {
+            writeNumber(output, (Number) value);
+        } else if (value instanceof String) {
+            writeString(output, (String) value);
+        } else if (value instanceof Boolean) {
+            output.writeAscii(Boolean.toString((Boolean) value));
+        } else if (value == null) {
+            output.writeAscii("null");
+        } else {
+            throw new IllegalArgumentException("Unsupported value: " + value);
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static void writeObject(Utf8Output output, Map<?, ?> value, int indent) throws IOException {
+        output.write('{');
+        boolean first = true;
+        for (Map.Entry entry : value.entrySet()) {
+            if (!first) {
+                output.write(',');
+            } else {
+                first = false;
+            }
+            if (indent >= 0) {
+                indent(output, indent + 1);
+            }
+            writeString(output, (String) entry.getKey());
+            if (indent >= 0) {
+                output.write(' ');
+            }
+            output.write(':');
+            if (indent >= 0) {
+                output.write(' ');
+            }
+            write(output, entry.getValue(), indent >= 0 ? indent + 1 : -1);
+        }
+        if (indent >= 0) {
+            indent(output, indent);
+        }
+        output.write('}');
+    }
+
+    private static void writeString(Utf8Output output, String value) throws IOException {
+        output.write('"');
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '\"':
+                output.writeAscii("\\\"");
+                break;
+            case '\\':
+                output.writeAscii("\\\\");
+                break;
+            case '\b':
+                output.writeAscii("\\b");
+                break;
+            case '\f':
+                output.writeAscii("\\f");
+                break;
+            case '\n':
+                output.writeAscii("\\n");
+                break;
+            case '\r':
+                output.writeAscii("\\r");
+                break;
+            case '\t':
+                output.writeAscii("\\t");
+                break;
+            default:
+                if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+                    String s = Integer.toHexString(c);
+                    output.write('\\');
+                    output.write('u');
+                    for (int j = s.length(); j < 4; j++) {
+                        output.write('0');
+                    }
+                    output.writeAscii(s);
+                } else {
+                    i += output.writeChar(value, i);
+                    continue;
+                }
+                break;
+            }
+            i++;
+        }
+        output.write('"');
+    }
+
+    private static void writeNumber(Utf8Output output, Number value) throws IOException {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            output.writeLong(value.longValue());
+        } else {
+            output.writeAscii(value.toString());
+        }
+    }
+
+    private static void writeArray(Utf8Output output, Collection<?> value, int indent) throws IOException {
+        output.write('[');
+        boolean first = true;
+        for (Object obj : value) {
+            if (!first) {
+                output.write(',');
+            } else {
+                first = false;
+            }
+            if (indent >= 0) {
+                indent(output, indent + 1);
+            }
+            write(output, obj, indent >= 0 ? indent + 1 : -1);
+        }
+        if (indent >= 0) {
+            indent(output, indent);
+        }
+        output.write(']');
+    }
+
+    private static void indent(Utf8Output output, int indent) throws IOException {
+        output.write('\n');
+        for (int i = 0; i < indent; i++) {
+            output.write('\t');
+        }
+    }
+
     static char[] INDENT;
     static {
         INDENT = new char[1];
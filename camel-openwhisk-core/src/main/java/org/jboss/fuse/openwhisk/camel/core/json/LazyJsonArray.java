@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.fuse.openwhisk.camel.core.json;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A {@link List} view over an array of a {@link JsonTape}.
+ *
+ * Elements are only created when accessed.  The first modification
+ * copies the elements into a regular list which is used from then on.
+ */
+final class LazyJsonArray extends AbstractList<Object> implements RandomAccess {
+
+    private final JsonTape tape;
+    private final int index;
+    private final int size;
+    private int[] positions;
+    private Object[] values;
+    private List<Object> delegate;
+
+    LazyJsonArray(JsonTape tape, int index, int size) {
+        this.tape = tape;
+        this.index = index;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return delegate != null ? delegate.size() : size;
+    }
+
+    @Override
+    public Object get(int i) {
+        if (delegate != null) {
+            return delegate.get(i);
+        }
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+        int[] positions = positions();
+        Object value = values[i];
+        if (value == null && tape.type(positions[i]) != JsonTape.NULL) {
+            value = tape.value(positions[i]);
+            values[i] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public Object set(int i, Object element) {
+        return materialize().set(i, element);
+    }
+
+    @Override
+    public void add(int i, Object element) {
+        modCount++;
+        materialize().add(i, element);
+    }
+
+    @Override
+    public Object remove(int i) {
+        modCount++;
+        return materialize().remove(i);
+    }
+
+    /**
+     * Writes the raw JSON if neither this array nor any of its accessed
+     * elements has been modified.
+     */
+    boolean writeRaw(Utf8Output output) throws IOException {
+        if (!isPristine()) {
+            return false;
+        }
+        tape.writeRaw(index, output);
+        return true;
+    }
+
+    boolean isPristine() {
+        if (delegate != null) {
+            return false;
+        }
+        if (values != null) {
+            for (Object value : values) {
+                if (value instanceof LazyJsonObject && !((LazyJsonObject) value).isPristine()
+                        || value instanceof LazyJsonArray && !((LazyJsonArray) value).isPristine()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int[] positions() {
+        if (positions == null) {
+            positions = new int[size];
+            values = new Object[size];
+            int p = index + 1;
+            for (int i = 0; i < size; i++) {
+                positions[i] = p;
+                p = tape.next(p);
+            }
+        }
+        return positions;
+    }
+
+    private List<Object> materialize() {
+        if (delegate == null) {
+            List<Object> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(get(i));
+            }
+            delegate = list;
+        }
+        return delegate;
+    }
+
+}
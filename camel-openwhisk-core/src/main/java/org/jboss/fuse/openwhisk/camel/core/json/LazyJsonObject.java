@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.fuse.openwhisk.camel.core.json;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A {@link Map} view over an object of a {@link JsonTape}.
+ *
+ * Names and values are only created when accessed.  The first modification
+ * copies the entries into a regular map which is used from then on.
+ */
+final class LazyJsonObject extends AbstractMap<String, Object> {
+
+    private final JsonTape tape;
+    private final int index;
+    private final int size;
+    private int[] positions;
+    private String[] names;
+    private Object[] values;
+    private Map<String, Object> delegate;
+    private boolean checked;
+
+    LazyJsonObject(JsonTape tape, int index, int size) {
+        this.tape = tape;
+        this.index = index;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return checkDuplicates() ? delegate.size() : size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (delegate != null) {
+            return delegate.containsKey(key);
+        }
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (delegate != null) {
+            return delegate.get(key);
+        }
+        int i = key instanceof String ? indexOf((String) key) : -1;
+        return i >= 0 ? value(i) : null;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        materialize().clear();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (checkDuplicates()) {
+            return delegate.entrySet();
+        }
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                if (delegate != null) {
+                    return delegate.entrySet().iterator();
+                }
+                return new Iterator<Entry<String, Object>>() {
+                    int next;
+                    int last = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        last = next++;
+                        return new LazyEntry(last);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last < 0) {
+                            throw new IllegalStateException();
+                        }
+                        materialize().remove(name(last));
+                        last = -1;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return LazyJsonObject.this.size();
+            }
+        };
+    }
+
+    /**
+     * Writes the raw JSON if neither this object nor any of its accessed
+     * children has been modified.
+     */
+    boolean writeRaw(Utf8Output output) throws IOException {
+        if (!isPristine()) {
+            return false;
+        }
+        tape.writeRaw(index, output);
+        return true;
+    }
+
+    boolean isPristine() {
+        if (delegate != null) {
+            return false;
+        }
+        if (values != null) {
+            for (Object value : values) {
+                if (value instanceof LazyJsonObject && !((LazyJsonObject) value).isPristine()
+                        || value instanceof LazyJsonArray && !((LazyJsonArray) value).isPristine()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks for duplicate names, which are only supported by copying the entries
+     * into a regular map, and returns <code>true</code> if such a map is used.
+     */
+    private boolean checkDuplicates() {
+        if (!checked && delegate == null) {
+            checked = true;
+            Set<String> set = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                if (!set.add(name(i))) {
+                    materialize();
+                    break;
+                }
+            }
+        }
+        return delegate != null;
+    }
+
+    private int indexOf(String key) {
+        int[] positions = positions();
+        // the last value wins for duplicate names, as when reading into a map
+        for (int i = size - 1; i >= 0; i--) {
+            if (names[i] != null ? names[i].equals(key) : tape.stringEquals(positions[i], key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int[] positions() {
+        if (positions == null) {
+            positions = new int[size];
+            names = new String[size];
+            values = new Object[size];
+            int p = index + 1;
+            for (int i = 0; i < size; i++) {
+                positions[i] = p;
+                p = tape.next(p + 1);
+            }
+        }
+        return positions;
+    }
+
+    private String name(int i) {
+        positions();
+        if (names[i] == null) {
+            names[i] = tape.name(positions[i]);
+        }
+        return names[i];
+    }
+
+    private Object value(int i) {
+        positions();
+        Object value = values[i];
+        if (value == null && tape.type(positions[i] + 1) != JsonTape.NULL) {
+            value = tape.value(positions[i] + 1);
+            values[i] = value;
+        }
+        return value;
+    }
+
+    /**
+     * An entry of the view, which reads through and writes to the regular map once the view is materialized
+     */
+    private final class LazyEntry implements Entry<String, Object> {
+
+        private final int i;
+
+        LazyEntry(int i) {
+            this.i = i;
+        }
+
+        @Override
+        public String getKey() {
+            return name(i);
+        }
+
+        @Override
+        public Object getValue() {
+            return delegate != null ? delegate.get(name(i)) : value(i);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return materialize().put(name(i), value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return getKey().equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    private Map<String, Object> materialize() {
+        if (delegate == null) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                map.put(name(i), value(i));
+            }
+            delegate = map;
+        }
+        return delegate;
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.fuse.openwhisk.camel.core.json;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A bounded cache of object names shared by all the readers.
+ *
+ * Requests of a given action usually have the very same structure, so names
+ * are looked up from the raw bytes or chars and the same {@link String}
+ * instances are returned, which also have their hash code already computed.
+ * The table uses a few linear probes and simply overwrites an entry when full,
+ * so it never grows.  Entries are immutable strings, so concurrent accesses
+ * only ever cost an additional allocation.
+ */
+final class NameCache {
+
+    /**
+     * Longer names are not cached
+     */
+    static final int MAX_LENGTH = 64;
+
+    private static final int MAX_PROBES = 4;
+
+    private static final String[] ENTRIES = new String[tableSize(Integer.getInteger("camel.openwhisk.json.nameCacheSize", 1024))];
+
+    private static final int MASK = ENTRIES.length - 1;
+
+    private NameCache() {
+    }
+
+    private static int tableSize(int size) {
+        int n = 1;
+        while (n < size && n < 1 << 20) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the name for the given ASCII bytes.
+     *
+     * @param hash the hash of the bytes, computed as by {@link String#hashCode()}
+     */
+    static String get(byte[] buffer, int offset, int length, int hash) {
+        String[] entries = ENTRIES;
+        int slot = hash & MASK;
+        for (int p = 0; p < MAX_PROBES; p++) {
+            String name = entries[(slot + p) & MASK];
+            if (name == null) {
+                break;
+            }
+            if (name.hashCode() == hash && equals(name, buffer, offset, length)) {
+                return name;
+            }
+        }
+        return put(new String(buffer, offset, length, StandardCharsets.ISO_8859_1), slot);
+    }
+
+    /**
+     * Returns the name for the given chars.
+     */
+    static String get(CharSequence chars) {
+        int length = chars.length();
+        if (length > MAX_LENGTH) {
+            return chars.toString();
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        String[] entries = ENTRIES;
+        int slot = hash & MASK;
+        for (int p = 0; p < MAX_PROBES; p++) {
+            String name = entries[(slot + p) & MASK];
+            if (name == null) {
+                break;
+            }
+            if (name.hashCode() == hash && equals(name, chars)) {
+                return name;
+            }
+        }
+        return put(chars.toString(), slot);
+    }
+
+    private static String put(String name, int slot) {
+        String[] entries = ENTRIES;
+        for (int p = 0; p < MAX_PROBES; p++) {
+            int i = (slot + p) & MASK;
+            if (entries[i] == null) {
+                entries[i] = name;
+                return name;
+            }
+        }
+        // all the probed entries are used, evict the first one
+        entries[slot] = name;
+        return name;
+    }
+
+    private static boolean equals(String name, byte[] buffer, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(String name, CharSequence chars) {
+        int length = chars.length();
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,502 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.fuse.openwhisk.camel.core.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A JSON parser working directly on UTF-8 encoded bytes.
+ *
+ * It produces the same {@link Map} / {@link Collection} structure as
+ * {@link JsonReader}, but avoids the per-character virtual calls and
+ * decoding of a {@link java.io.Reader}: strings without escapes are
+ * created in a single step from the underlying bytes.
+ */
+public class Utf8JsonReader {
+
+    /**
+     * Buffers larger than this size are not kept around by the calling thread
+     */
+    public static final int MAX_POOLED_BUFFER_SIZE = Integer.getInteger("camel.openwhisk.json.maxPooledBufferSize", 1024 * 1024);
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<>();
+
+    private static final Method IS_VIRTUAL = isVirtualMethod();
+
+    //
+    // Implementation
+    //
+
+    protected final byte[] buffer;
+    protected final int start;
+    protected final int limit;
+    protected final StringBuilder recorder;
+    protected final Deque<Object> stack = new ArrayDeque<>();
+    protected final NumberMode numberMode;
+    protected int index;
+    protected int current;
+
+    protected Utf8JsonReader(byte[] buffer, int offset, int length) {
+        this(buffer, offset, length, NumberMode.DOUBLE);
+    }
+
+    protected Utf8JsonReader(byte[] buffer, int offset, int length, NumberMode numberMode) {
+        this.buffer = buffer;
+        this.numberMode = numberMode;
+        this.start = offset;
+        this.limit = offset + length;
+        this.index = offset;
+        this.recorder = new StringBuilder();
+    }
+
+    public static Object read(byte[] buffer, int offset, int length) throws IOException {
+        return new Utf8JsonReader(buffer, offset, length).parse();
+    }
+
+    public static Object read(byte[] buffer, int offset, int length, NumberMode numberMode) throws IOException {
+        return new Utf8JsonReader(buffer, offset, length, numberMode).parse();
+    }
+
+    public static Object read(InputStream is, int contentLength) throws IOException {
+        return read(is, contentLength, NumberMode.DOUBLE);
+    }
+
+    public static Object read(InputStream is, int contentLength, NumberMode numberMode) throws IOException {
+        ByteBuffer bb = readFully(is, contentLength);
+        return read(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining(), numberMode);
+    }
+
+    /**
+     * Reads the whole stream into a buffer owned by the calling thread.
+     * The returned buffer is only valid until the next call from the same thread.
+     *
+     * @param is the stream to read
+     * @param contentLength the expected length, or <code>-1</code> if unknown
+     */
+    public static ByteBuffer readFully(InputStream is, int contentLength) throws IOException {
+        return readFully(is, contentLength, true);
+    }
+
+    /**
+     * Reads the whole stream into a buffer.
+     *
+     * @param is the stream to read
+     * @param contentLength the expected length, or <code>-1</code> if unknown
+     * @param pooled if the buffer owned by the calling thread can be used
+     */
+    public static ByteBuffer readFully(InputStream is, int contentLength, boolean pooled) throws IOException {
+        boolean pool = pooled && isPooling();
+        byte[] buf = pool ? BUFFERS.get() : null;
+        // the buffer grows as the bytes arrive past the pooled size, rather than trusting the announced length
+        int size = contentLength >= 0 ? Math.min(contentLength, MAX_POOLED_BUFFER_SIZE) : DEFAULT_BUFFER_SIZE;
+        if (buf == null || buf.length < size) {
+            buf = new byte[Math.max(size, DEFAULT_BUFFER_SIZE)];
+        }
+        int len = 0;
+        while (true) {
+            if (len == buf.length) {
+                if (contentLength >= 0 && len >= contentLength) {
+                    break;
+                }
+                byte[] newBuf = new byte[contentLength >= 0 ? (int) Math.min(2L * buf.length, contentLength) : buf.length * 2];
+                System.arraycopy(buf, 0, newBuf, 0, len);
+                buf = newBuf;
+            }
+            int nb = is.read(buf, len, buf.length - len);
+            if (nb < 0) {
+                break;
+            }
+            len += nb;
+        }
+        if (pool && buf.length <= MAX_POOLED_BUFFER_SIZE) {
+            BUFFERS.set(buf);
+        }
+        return ByteBuffer.wrap(buf, 0, len);
+    }
+
+    /**
+     * Returns <code>true</code> if the calling thread can keep buffers for its next calls.
+     * Virtual threads are created for each activation, so their buffers would never be reused.
+     */
+    static boolean isPooling() {
+        if (IS_VIRTUAL != null) {
+            try {
+                return !(Boolean) IS_VIRTUAL.invoke(Thread.currentThread());
+            } catch (ReflectiveOperationException e) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    private static Method isVirtualMethod() {
+        try {
+            return Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    protected Object parse() throws IOException {
+        read();
+        skipWhiteSpace();
+        Object result = readValue();
+        skipWhiteSpace();
+        if (!endOfText()) {
+            throw error("Unexpected character");
+        }
+        return result;
+    }
+
+    protected Object readValue() throws IOException {
+        switch (current) {
+        case 'n':
+            return readNull();
+        case 't':
+            return readTrue();
+        case 'f':
+            return readFalse();
+        case '"':
+            return readString();
+        case '[':
+            return readArray();
+        case '{':
+            return readObject();
+        case '-':
+        case '0':
+        case '1':
+        case '2':
+        case '3':
+        case '4':
+        case '5':
+        case '6':
+        case '7':
+        case '8':
+        case '9':
+            return readNumber();
+        default:
+            throw expected("value");
+        }
+    }
+
+    protected Collection<?> readArray() throws IOException {
+        read();
+        Collection<Object> array = new ArrayList<>();
+        stack.push(array);
+        skipWhiteSpace();
+        if (!readChar(']')) {
+            do {
+                skipWhiteSpace();
+                array.add(readValue());
+                skipWhiteSpace();
+            } while (readChar(','));
+            if (!readChar(']')) {
+                throw expected("',' or ']'");
+            }
+        }
+        stack.pop();
+        return array;
+    }
+
+    protected Map<String, Object> readObject() throws IOException {
+        read();
+        Map<String, Object> object = new HashMap<>();
+        stack.push(object);
+        skipWhiteSpace();
+        if (!readChar('}')) {
+            do {
+                skipWhiteSpace();
+                String name = readName();
+                stack.push(name);
+                skipWhiteSpace();
+                if (!readChar(':')) {
+                    throw expected("':'");
+                }
+                skipWhiteSpace();
+                object.put(name, readValue());
+                stack.pop();
+                skipWhiteSpace();
+            } while (readChar(','));
+            if (!readChar('}')) {
+                throw expected("',' or '}'");
+            }
+        }
+        stack.pop();
+        return object;
+    }
+
+    protected Object readNull() throws IOException {
+        read();
+        readRequiredChar('u');
+        readRequiredChar('l');
+        readRequiredChar('l');
+        return null;
+    }
+
+    protected Boolean readTrue() throws IOException {
+        read();
+        readRequiredChar('r');
+        readRequiredChar('u');
+        readRequiredChar('e');
+        return Boolean.TRUE;
+    }
+
+    protected Boolean readFalse() throws IOException {
+        read();
+        readRequiredChar('a');
+        readRequiredChar('l');
+        readRequiredChar('s');
+        readRequiredChar('e');
+        return Boolean.FALSE;
+    }
+
+    protected void readRequiredChar(char ch) throws IOException {
+        if (!readChar(ch)) {
+            throw expected("'" + ch + "'");
+        }
+    }
+
+    protected String readString() throws IOException {
+        // fast path: the string does not contain any escape sequence,
+        // so that it can be created directly from the bytes
+        int begin = index;
+        boolean ascii = true;
+        for (int i = begin; i < limit; i++) {
+            byte b = buffer[i];
+            if (b == '"') {
+                String str = ascii
+                        ? new String(buffer, begin, i - begin, StandardCharsets.ISO_8859_1)
+                        : new String(buffer, begin, i - begin, StandardCharsets.UTF_8);
+                index = i + 1;
+                read();
+                return str;
+            } else if (b == '\\' || (b >= 0 && b < 0x20)) {
+                break;
+            } else if (b < 0) {
+                ascii = false;
+            }
+        }
+        return readEscapedString();
+    }
+
+    protected String readEscapedString() throws IOException {
+        recorder.setLength(0);
+        read();
+        int begin = index - 1;
+        while (current != '"') {
+            if (current == '\\') {
+                appendBytes(begin, index - 1);
+                readEscape();
+                begin = index - 1;
+            } else if (current < 0x20) {
+                throw expected("valid string character");
+            } else {
+                read();
+            }
+        }
+        appendBytes(begin, index - 1);
+        read();
+        return recorder.toString();
+    }
+
+    private void appendBytes(int from, int to) {
+        if (to > from) {
+            recorder.append(new String(buffer, from, to - from, StandardCharsets.UTF_8));
+        }
+    }
+
+    protected void readEscape() throws IOException {
+        read();
+        switch (current) {
+        case '"':
+        case '/':
+        case '\\':
+            recorder.append((char) current);
+            break;
+        case 'b':
+            recorder.append('\b');
+            break;
+        case 'f':
+            recorder.append('\f');
+            break;
+        case 'n':
+            recorder.append('\n');
+            break;
+        case 'r':
+            recorder.append('\r');
+            break;
+        case 't':
+            recorder.append('\t');
+            break;
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                read();
+                if (!JsonReader.isHexDigit(current)) {
+                    throw expected("hexadecimal digit");
+                }
+                value = (value << 4) + Character.digit(current, 16);
+            }
+            recorder.append((char) value);
+            break;
+        default:
+            throw expected("valid escape sequence");
+        }
+        read();
+    }
+
+    protected Number readNumber() throws IOException {
+        int begin = index - 1;
+        readChar('-');
+        int firstDigit = current;
+        if (!readDigit()) {
+            throw expected("digit");
+        }
+        if (firstDigit != '0') {
+            while (readDigit()) {
+                // Do nothing
+            }
+        }
+        readFraction();
+        readExponent();
+        int end = endOfText() ? limit : index - 1;
+        return JsonNumbers.parse(buffer, begin, end, numberMode);
+    }
+
+    protected boolean readFraction() throws IOException {
+        if (!readChar('.')) {
+            return false;
+        }
+        if (!readDigit()) {
+            throw expected("digit");
+        }
+        while (readDigit()) {
+            // Do nothing
+        }
+        return true;
+    }
+
+    protected boolean readExponent() throws IOException {
+        if (!readChar('e') && !readChar('E')) {
+            return false;
+        }
+        if (!readChar('+')) {
+            readChar('-');
+        }
+        if (!readDigit()) {
+            throw expected("digit");
+        }
+        while (readDigit()) {
+            // Do nothing
+        }
+        return true;
+    }
+
+    protected String readName() throws IOException {
+        if (current != '"') {
+            throw expected("name");
+        }
+        // short ASCII names without escapes are shared across requests
+        int begin = index;
+        // up to the closing quote of the longest cached name
+        int end = Math.min(limit, begin + NameCache.MAX_LENGTH + 1);
+        int hash = 0;
+        for (int i = begin; i < end; i++) {
+            byte b = buffer[i];
+            if (b == '"') {
+                String name = NameCache.get(buffer, begin, i - begin, hash);
+                index = i + 1;
+                read();
+                return name;
+            } else if (b == '\\' || b < 0x20) {
+                // escapes, control or non ASCII characters
+                break;
+            }
+            hash = 31 * hash + b;
+        }
+        return readString();
+    }
+
+    protected boolean readChar(char ch) throws IOException {
+        if (current != ch) {
+            return false;
+        }
+        read();
+        return true;
+    }
+
+    protected boolean readDigit() throws IOException {
+        if (current < '0' || current > '9') {
+            return false;
+        }
+        read();
+        return true;
+    }
+
+    protected void skipWhiteSpace() throws IOException {
+        while (JsonReader.isWhiteSpace(current)) {
+            read();
+        }
+    }
+
+    protected void read() throws IOException {
+        if (endOfText()) {
+            throw error("Unexpected end of input");
+        }
+        current = index < limit ? buffer[index++] & 0xFF : -1;
+    }
+
+    protected boolean endOfText() {
+        return current == -1;
+    }
+
+    protected IOException expected(String expected) {
+        if (endOfText()) {
+            return error("Unexpected end of input");
+        }
+        return error("Expected " + expected);
+    }
+
+    protected IOException error(String message) {
+        // line and column are only computed when needed
+        int line = 1;
+        int column = 0;
+        int end = endOfText() ? limit : index - 1;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+        }
+        return new IOException(message + " at " + line + ":" + (column + 1));
+    }
+
+}
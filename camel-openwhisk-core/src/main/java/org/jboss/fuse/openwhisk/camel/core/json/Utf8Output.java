@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.fuse.openwhisk.camel.core.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A growable buffer of UTF-8 encoded bytes.
+ *
+ * When a {@link Spill} is set, the buffer does not grow past
+ * {@link Utf8JsonReader#MAX_POOLED_BUFFER_SIZE}: the stream is opened
+ * once that size is reached and the content is written to it chunk by chunk.
+ */
+public final class Utf8Output {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    private static final ThreadLocal<Utf8Output> BUFFERS = new ThreadLocal<>();
+
+    /**
+     * Opens the stream to write to when the content does not fit in the buffer
+     */
+    public interface Spill {
+        OutputStream open() throws IOException;
+    }
+
+    private byte[] buffer;
+    private int count;
+    private Spill spill;
+    private OutputStream stream;
+
+    public Utf8Output() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public Utf8Output(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Returns an empty buffer owned by the calling thread.
+     * The buffer is only valid until the next call from the same thread.
+     * On virtual threads, which are not reused, a new buffer is returned.
+     */
+    public static Utf8Output acquire() {
+        if (!Utf8JsonReader.isPooling()) {
+            return new Utf8Output();
+        }
+        Utf8Output output = BUFFERS.get();
+        if (output == null || output.buffer.length > Utf8JsonReader.MAX_POOLED_BUFFER_SIZE) {
+            output = new Utf8Output();
+            BUFFERS.set(output);
+        }
+        output.count = 0;
+        output.spill = null;
+        output.stream = null;
+        return output;
+    }
+
+    public void setSpill(Spill spill) {
+        this.spill = spill;
+    }
+
+    /**
+     * Returns <code>true</code> if the content has been written to the spill stream
+     */
+    public boolean isSpilled() {
+        return stream != null;
+    }
+
+    public byte[] array() {
+        return buffer;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * Writes the remaining content to the spill stream, if it has been opened
+     */
+    public void flush() throws IOException {
+        if (stream != null) {
+            stream.write(buffer, 0, count);
+            count = 0;
+            stream.flush();
+        }
+    }
+
+    public void writeTo(OutputStream os) throws IOException {
+        os.write(buffer, 0, count);
+    }
+
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            ensureCapacity(1);
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (count + len > buffer.length) {
+            ensureCapacity(len);
+        }
+        if (count + len > buffer.length) {
+            // only possible when spilling
+            stream.write(b, off, len);
+        } else {
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Writes a string known to only contain ASCII characters
+     */
+    public void writeAscii(String s) throws IOException {
+        int len = s.length();
+        if (count + len > buffer.length) {
+            ensureCapacity(len);
+        }
+        if (count + len > buffer.length) {
+            for (int i = 0; i < len; i++) {
+                write(s.charAt(i));
+            }
+        } else {
+            for (int i = 0; i < len; i++) {
+                buffer[count++] = (byte) s.charAt(i);
+            }
+        }
+    }
+
+    public void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        if (count + 20 > buffer.length) {
+            ensureCapacity(20);
+        }
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int start = count;
+        do {
+            buffer[count++] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        // digits have been written in reverse order
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            byte b = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = b;
+        }
+    }
+
+    /**
+     * Encodes the character at the given index of the string and returns
+     * the number of characters consumed, which is 2 for a surrogate pair.
+     */
+    public int writeChar(CharSequence s, int index) throws IOException {
+        if (count + 4 > buffer.length) {
+            ensureCapacity(4);
+        }
+        char c = s.charAt(index);
+        if (c < 0x80) {
+            buffer[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[count++] = (byte) (0xC0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && index + 1 < s.length() && Character.isLowSurrogate(s.charAt(index + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(index + 1));
+            buffer[count++] = (byte) (0xF0 | (cp >> 18));
+            buffer[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buffer[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (cp & 0x3F));
+            return 2;
+        } else if (Character.isSurrogate(c)) {
+            // unpaired surrogate, same replacement as String.getBytes()
+            buffer[count++] = '?';
+        } else {
+            buffer[count++] = (byte) (0xE0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return 1;
+    }
+
+    private void ensureCapacity(int len) throws IOException {
+        if (spill != null && count + len > Utf8JsonReader.MAX_POOLED_BUFFER_SIZE) {
+            if (stream == null) {
+                stream = spill.open();
+            }
+            stream.write(buffer, 0, count);
+            count = 0;
+        }
+        if (count + len > buffer.length && (stream == null || len <= Utf8JsonReader.MAX_POOLED_BUFFER_SIZE)) {
+            int size = Math.max(buffer.length * 2, count + len);
+            if (spill != null) {
+                size = Math.max(Math.min(size, Utf8JsonReader.MAX_POOLED_BUFFER_SIZE), count + len);
+            }
+            buffer = Arrays.copyOf(buffer, size);
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.jboss.fuse.openwhisk.camel.core.support;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors running concurrent activations.
+ */
+public final class ActivationExecutors {
+
+    public static final String AUTO = "auto";
+    public static final String POOL = "pool";
+    public static final String VIRTUAL = "virtual";
+
+    private static final ThreadLocal<Boolean> REJECTED = new ThreadLocal<>();
+
+    private ActivationExecutors() {
+    }
+
+    /**
+     * Returns <code>true</code> if the current task was submitted while the maximum number
+     * of activations were running, in which case it must not run an activation
+     */
+    public static boolean isRejected() {
+        return REJECTED.get() != null;
+    }
+
+    /**
+     * Creates an executor running at most <code>concurrency</code> activations at once.
+     *
+     * @param model <code>pool</code> for a pool of platform threads, <code>virtual</code>
+     *              for virtual threads, or <code>auto</code> to use virtual threads when available
+     */
+    public static Executor create(String model, int concurrency) {
+        if (VIRTUAL.equals(model) || AUTO.equals(model)) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if (virtual != null) {
+                return new BoundedExecutor(virtual, concurrency);
+            } else if (VIRTUAL.equals(model)) {
+                throw new IllegalStateException("Virtual threads are not supported by this JVM");
+            }
+        } else if (!POOL.equals(model)) {
+            throw new IllegalArgumentException("Unknown execution model: " + model);
+        }
+        return newPool(concurrency);
+    }
+
+    private static Executor newPool(int concurrency) {
+        final AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread th = new Thread(r, "Activation-" + counter.incrementAndGet());
+                        th.setDaemon(true);
+                        return th;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Limits the number of tasks running at once.  The caller is the dispatcher of the
+     * server, which must keep accepting requests, so the tasks submitted when the limit
+     * is reached still run, but marked as rejected so that they answer with an error.
+     */
+    static final class BoundedExecutor implements Executor {
+
+        private final Executor delegate;
+        private final Semaphore semaphore;
+
+        BoundedExecutor(Executor delegate, int concurrency) {
+            this.delegate = delegate;
+            this.semaphore = new Semaphore(concurrency);
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            final boolean permitted = semaphore.tryAcquire();
+            try {
+                delegate.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!permitted) {
+                            REJECTED.set(Boolean.TRUE);
+                        }
+                        try {
+                            command.run();
+                        } finally {
+                            if (permitted) {
+                                semaphore.release();
+                            } else {
+                                REJECTED.remove();
+                            }
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                if (permitted) {
+                    semaphore.release();
+                }
+                throw e;
+            }
+        }
+    }
+
+}
@@ -118,7 +118,14 @@ public class FastCamelContext extends DefaultCamelContext {
 
     @Override
     public Boolean isTypeConverterStatisticsEnabled() {
-        return null;
+        return getTypeConverterRegistry().getStatistics().isStatisticsEnabled();
+    }
+
+    @Override
+    public void setTypeConverterStatisticsEnabled(Boolean typeConverterStatisticsEnabled) {
+        if (typeConverterStatisticsEnabled != null) {
+            getTypeConverterRegistry().getStatistics().setStatisticsEnabled(typeConverterStatisticsEnabled);
+        }
     }
 
     @Override
@@ -1,15 +1,24 @@
 package org.jboss.fuse.openwhisk.camel.core.support;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.camel.CamelContext;
 import org.apache.camel.CamelContextAware;
@@ -18,7 +27,6 @@ import org.apache.camel.Exchange;
 import org.apache.camel.LoggingLevel;
 import org.apache.camel.NoFactoryAvailableException;
 import org.apache.camel.NoTypeConversionAvailableException;
-import org.apache.camel.RuntimeCamelException;
 import org.apache.camel.TypeConversionException;
 import org.apache.camel.TypeConverter;
 import org.apache.camel.TypeConverterExists;
@@ -27,10 +35,15 @@ import org.apache.camel.TypeConverters;
 import org.apache.camel.impl.converter.AnnotationTypeConverterLoader;
 import org.apache.camel.impl.converter.ArrayTypeConverter;
 import org.apache.camel.impl.converter.AsyncProcessorTypeConverter;
+import org.apache.camel.impl.converter.CachingInjector;
 import org.apache.camel.impl.converter.CoreFallbackConverter;
 import org.apache.camel.impl.converter.EnumTypeConverter;
 import org.apache.camel.impl.converter.FutureTypeConverter;
+import org.apache.camel.impl.converter.InstanceMethodFallbackTypeConverter;
+import org.apache.camel.impl.converter.InstanceMethodTypeConverter;
 import org.apache.camel.impl.converter.OptimisedTypeConverter;
+import org.apache.camel.impl.converter.StaticMethodFallbackTypeConverter;
+import org.apache.camel.impl.converter.StaticMethodTypeConverter;
 import org.apache.camel.impl.converter.ToStringTypeConverter;
 import org.apache.camel.impl.converter.TypeConvertersLoader;
 import org.apache.camel.spi.FactoryFinder;
@@ -42,26 +55,80 @@ import org.apache.camel.spi.TypeConverterRegistry;
 import org.apache.camel.support.ServiceSupport;
 import org.apache.camel.util.MessageHelper;
 import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class FastTypeConverterRegistry extends ServiceSupport implements TypeConverter, TypeConverterRegistry {
 
+    /**
+     * Maximum number of pairs of types remembered as not convertible
+     */
+    public static final int MAX_MISSES = Integer.getInteger("camel.openwhisk.converter.maxMisses", 1024);
+
+    /**
+     * Collect statistics about the conversions of each pair of types, reported periodically and when the runtime exits
+     */
+    public static final boolean STATISTICS = Boolean.getBoolean("camel.openwhisk.converter.statistics");
+
+    /**
+     * Number of pairs of types listed in the statistics report
+     */
+    public static final int STATISTICS_TOP = Integer.getInteger("camel.openwhisk.converter.statistics.top", 20);
+
+    /**
+     * Interval in milliseconds at which the statistics report is logged if conversions were made, or 0 to only report on exit
+     */
+    public static final long STATISTICS_INTERVAL = Long.getLong("camel.openwhisk.converter.statistics.interval", 60000);
+
+    /**
+     * Remember which fallback converter converted each pair of types, and try it first for the next conversions
+     */
+    public static final boolean ADAPTIVE_FALLBACKS = Boolean.parseBoolean(System.getProperty("camel.openwhisk.converter.adaptiveFallbacks", "true"));
+
+    // the result of a fallback converter which converted the value to null
+    private static final Object NULL_RESULT = new Object();
+
+    private final Logger log = LoggerFactory.getLogger(FastTypeConverterRegistry.class);
+
     protected final PackageScanClassResolver resolver;
     protected CamelContext camelContext;
     protected Injector injector;
     protected final FactoryFinder factoryFinder;
     protected final List<TypeConverterLoader> typeConverterLoaders = new ArrayList<>();
     protected final List<FallbackTypeConverter> fallbackConverters = new CopyOnWriteArrayList<>();
-    protected final Map<TypeMapping, TypeConverter> typeMappings = new HashMap<>();
+    protected final Map<TypeMapping, TypeConverter> typeMappings = new ConcurrentHashMap<>();
     protected final OptimisedTypeConverter optimisedTypeConverter = new OptimisedTypeConverter();
     protected final AtomicBoolean loaded = new AtomicBoolean();
+    // the packages and classes whose converters are listed in the index generated at build time
+    protected final Set<String> indexedPackages = new HashSet<>();
+    protected final Map<Class<?>, CachingInjector<?>> injectors = new ConcurrentHashMap<>();
+    // kept across the changes of the registered converters
+    protected final TypeConverterStatistics statistics = new TypeConverterStatistics(fallbackConverters);
+    // the converters resolved for a from-type, then a to-type, which can be read without locking
+    // or allocating, and are invalidated as a whole whenever the registered converters change
+    private final Resolutions resolutions = new Resolutions();
 
     public FastTypeConverterRegistry(CamelContext camelContext, PackageScanClassResolver resolver, Injector injector, FactoryFinder factoryFinder) {
         this.camelContext = camelContext;
         this.resolver = resolver;
         this.injector = injector;
         this.factoryFinder = factoryFinder;
-        this.typeConverterLoaders.add(new AnnotationTypeConverterLoader(resolver));
+        this.typeConverterLoaders.add(new AnnotationTypeConverterLoader(resolver) {
+            @Override
+            protected String[] findPackageNames() throws IOException {
+                // the indexed packages do not need to be scanned again
+                List<String> names = new ArrayList<>();
+                for (String name : super.findPackageNames()) {
+                    if (!indexedPackages.contains(name)) {
+                        names.add(name);
+                    }
+                }
+                return names.toArray(new String[names.size()]);
+            }
+        });
         loadInitialConverters();
+        // the statistics can be enabled later on too, which starts reporting them
+        statistics.setStatisticsEnabled(STATISTICS);
     }
 
     private void loadInitialConverters() {
@@ -112,6 +179,8 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
     public void addTypeConverter(Class<?> toType, Class<?> fromType, TypeConverter typeConverter) {
         TypeMapping key = new SimpleTypeMapping(toType, fromType);
         typeMappings.put(key, typeConverter);
+        // the new converter can change the resolution of other types too
+        resolutions.invalidate();
     }
 
     @Override
@@ -183,6 +252,9 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
         try {
             answer = doConvertTo(type, exchange, value, false);
         } catch (Exception e) {
+            if (statistics.isStatisticsEnabled() && value != null) {
+                statistics.get(type, value.getClass()).failures.increment();
+            }
             // if its a ExecutionException then we have rethrow it as its not due to failed conversion
             // this is special for FutureTypeConverter
             boolean execution = ObjectHelper.getException(ExecutionException.class, e) != null
@@ -218,6 +290,9 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
 
     protected Object doConvertTo(final Class<?> type, final Exchange exchange, final Object value, final boolean tryConvert) throws Exception {
         if (value == null) {
+            if (statistics.isStatisticsEnabled()) {
+                statistics.noop();
+            }
             // no type conversion was needed
             // lets avoid NullPointerException when converting to boolean for null values
             if (boolean.class == type) {
@@ -228,12 +303,18 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
 
         // same instance type
         if (type.isInstance(value)) {
+            if (statistics.isStatisticsEnabled()) {
+                statistics.noop();
+            }
             // no type conversion was needed
             return value;
         }
 
         // special for NaN numbers, which we can only convert for floating numbers
         if ((value instanceof Float && value.equals(Float.NaN)) || (value instanceof Double && value.equals(Double.NaN))) {
+            if (statistics.isStatisticsEnabled()) {
+                statistics.noop();
+            }
             // no type conversion was needed
             if (Float.class.isAssignableFrom(type)) {
                 return Float.NaN;
@@ -245,17 +326,36 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
             }
         }
 
-        // use the optimised core converter first
-        Object result = optimisedTypeConverter.convertTo(type, exchange, value);
+        // the counters of the pair of types, only looked up when the statistics are enabled
+        TypeConverterStatistics.PairStatistics stats = statistics.isStatisticsEnabled()
+                ? statistics.get(type, value.getClass()) : null;
+
+        // convert the numbers, strings and booleans directly, then use the optimised core converter
+        Object result = NumericTypeConverter.convertTo(type, value);
+        if (result == null) {
+            result = optimisedTypeConverter.convertTo(type, exchange, value);
+        }
         if (result != null) {
+            if (stats != null) {
+                stats.baseHits.increment();
+            }
             return result;
         }
 
+        // try to find a suitable type converter
+        Resolution resolution = resolutions.resolve(type, value.getClass());
+
         // check if we have tried it before and if its a miss
-        TypeMapping key = new SimpleTypeMapping(type, value.getClass());
+        if (resolution.miss) {
+            if (stats != null) {
+                stats.misses.increment();
+            }
+            return Void.TYPE;
+        }
 
-        // try to find a suitable type converter
-        TypeConverter converter = getOrFindTypeConverter(key);
+        TypeConverter converter = resolution.converter;
+        // a converter may not be able to convert all the values of its type
+        boolean found = converter != null;
         if (converter != null) {
             Object rc;
             if (tryConvert) {
@@ -264,8 +364,14 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
                 rc = converter.convertTo(type, exchange, value);
             }
             if (rc == null && converter.allowNull()) {
+                if (stats != null) {
+                    stats.hits.increment();
+                }
                 return null;
             } else if (rc != null) {
+                if (stats != null) {
+                    stats.hits.increment();
+                }
                 return rc;
             }
         }
@@ -275,8 +381,9 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
             Class<?> primitiveType = ObjectHelper.convertPrimitiveTypeToWrapperType(type);
             if (primitiveType != type) {
                 Class<?> fromType = value.getClass();
-                TypeConverter tc = getOrFindTypeConverter(new SimpleTypeMapping(primitiveType, fromType));
+                TypeConverter tc = getOrFindTypeConverter(primitiveType, fromType);
                 if (tc != null) {
+                    found = true;
                     // add the type as a known type converter as we can convert from primitive to object converter
                     addTypeConverter(type, fromType, tc);
                     Object rc;
@@ -286,57 +393,104 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
                         rc = tc.convertTo(primitiveType, exchange, value);
                     }
                     if (rc == null && tc.allowNull()) {
+                        if (stats != null) {
+                            stats.hits.increment();
+                        }
                         return null;
                     } else if (rc != null) {
+                        if (stats != null) {
+                            stats.hits.increment();
+                        }
                         return rc;
                     }
                 }
             }
         }
 
-        // fallback converters
-        for (FallbackTypeConverter fallback : fallbackConverters) {
-            TypeConverter tc = fallback.getFallbackTypeConverter();
-            Object rc;
-            if (tryConvert) {
-                rc = tc.tryConvertTo(type, exchange, value);
-            } else {
-                rc = tc.convertTo(type, exchange, value);
-            }
-            if (rc == null && tc.allowNull()) {
-                return null;
+        // fallback converters, starting with the one which converted this pair of types before
+        FallbackTypeConverter previous = ADAPTIVE_FALLBACKS ? resolution.fallback : null;
+        if (previous != null) {
+            Object rc = doFallbackConvertTo(previous, type, exchange, value, tryConvert, stats);
+            if (rc != null) {
+                return rc == NULL_RESULT ? null : rc;
             }
-
-            if (Void.TYPE.equals(rc)) {
-                // it cannot be converted so give up
-                return Void.TYPE;
+        }
+        for (FallbackTypeConverter fallback : fallbackConverters) {
+            if (fallback == previous) {
+                continue;
             }
-
+            Object rc = doFallbackConvertTo(fallback, type, exchange, value, tryConvert, stats);
             if (rc != null) {
-                // if fallback can promote then let it be promoted to a first class type converter
-                if (fallback.isCanPromote()) {
-                    // add it as a known type converter since we found a fallback that could do it
-                    addTypeConverter(type, value.getClass(), fallback.getFallbackTypeConverter());
+                if (ADAPTIVE_FALLBACKS && rc != Void.TYPE && !fallback.isCanPromote()) {
+                    // only remembered for this exact pair of types, so that a converter which
+                    // cannot be promoted never becomes a first class type converter
+                    resolution.fallback = fallback;
                 }
-
-                // return converted value
-                return rc;
+                return rc == NULL_RESULT ? null : rc;
             }
         }
-        // Could not find suitable conversion, so return Void to indicate not found
+        // Could not find suitable conversion, so remember it and return Void to indicate not found
+        if (!found) {
+            resolutions.miss(resolution);
+        }
+        if (stats != null) {
+            stats.misses.increment();
+        }
         return Void.TYPE;
     }
 
-    protected <T> TypeConverter getOrFindTypeConverter(TypeMapping key) {
-        TypeConverter converter = typeMappings.get(key);
-        if (converter == null) {
-            // converter not found, try to lookup then
-            converter = lookup(key.getToType(), key.getFromType());
-            if (converter != null) {
-                typeMappings.putIfAbsent(key, converter);
+    /**
+     * Converts the value with the given fallback converter, returning <code>null</code> if it cannot convert it,
+     * or {@link #NULL_RESULT} if it converted it to <code>null</code>
+     */
+    private Object doFallbackConvertTo(FallbackTypeConverter fallback, Class<?> type, Exchange exchange, Object value,
+                                       boolean tryConvert, TypeConverterStatistics.PairStatistics stats) {
+        TypeConverter tc = fallback.getFallbackTypeConverter();
+        long start = stats != null ? System.nanoTime() : 0;
+        Object rc;
+        if (tryConvert) {
+            rc = tc.tryConvertTo(type, exchange, value);
+        } else {
+            rc = tc.convertTo(type, exchange, value);
+        }
+        if (stats != null) {
+            fallback.record(System.nanoTime() - start);
+        }
+        if (rc == null && tc.allowNull()) {
+            if (stats != null) {
+                stats.fallbacks.increment();
+            }
+            return NULL_RESULT;
+        }
+
+        if (Void.TYPE.equals(rc)) {
+            if (stats != null) {
+                stats.misses.increment();
             }
+            // it cannot be converted so give up
+            return Void.TYPE;
         }
-        return converter;
+
+        if (rc != null) {
+            // if fallback can promote then let it be promoted to a first class type converter
+            if (fallback.isCanPromote()) {
+                if (stats != null) {
+                    stats.promotions.increment();
+                }
+                // add it as a known type converter since we found a fallback that could do it
+                addTypeConverter(type, value.getClass(), fallback.getFallbackTypeConverter());
+            }
+            if (stats != null) {
+                stats.fallbacks.increment();
+            }
+        }
+
+        // return converted value, or null to try the next fallback converter
+        return rc;
+    }
+
+    protected TypeConverter getOrFindTypeConverter(Class<?> toType, Class<?> fromType) {
+        return resolutions.resolve(toType, fromType).converter;
     }
 
     @Override
@@ -391,22 +545,14 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
         // only do these tests as fallback and only on the target type (eg not on its super)
         if (!isSuper) {
             if (fromType != null && !fromType.equals(Object.class)) {
-                // lets try classes derived from this toType
-                Set<Map.Entry<TypeMapping, TypeConverter>> entries = typeMappings.entrySet();
-                for (Map.Entry<TypeMapping, TypeConverter> entry : entries) {
-                    TypeMapping key = entry.getKey();
-                    Class<?> aToType = key.getToType();
-                    if (toType.isAssignableFrom(aToType)) {
-                        Class<?> aFromType = key.getFromType();
-                        // skip Object based we do them last
-                        if (!aFromType.equals(Object.class) && aFromType.isAssignableFrom(fromType)) {
-                            return entry.getValue();
-                        }
-                    }
+                // lets try classes derived from this toType, from the closest super types of fromType
+                TypeConverter converter = resolutions.findDerived(toType, fromType);
+                if (converter != null) {
+                    return converter;
                 }
 
                 // lets test for Object based converters as last resort
-                TypeConverter converter = getTypeConverter(toType, Object.class);
+                converter = getTypeConverter(toType, Object.class);
                 if (converter != null) {
                     return converter;
                 }
@@ -421,6 +567,8 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
      * Checks if the registry is loaded and if not lazily load it
      */
     protected void loadTypeConverters() throws Exception {
+        loadIndexedTypeConverters();
+
         for (TypeConverterLoader typeConverterLoader : typeConverterLoaders) {
             typeConverterLoader.load(this);
         }
@@ -433,6 +581,91 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
         }
     }
 
+    /**
+     * Registers the converters listed in the index generated at build time, which are only created when used
+     */
+    protected void loadIndexedTypeConverters() throws IOException {
+        TypeConverterIndex index = TypeConverterIndex.read();
+        if (index == null) {
+            return;
+        }
+        indexedPackages.addAll(index.getPackages());
+        // the last converter of a pair of types wins, as when they are scanned
+        Map<TypeMapping, TypeConverter> converters = new HashMap<>();
+        for (List<String> converter : index.getConverters()) {
+            converters.put(new LazyTypeMapping(converter.get(0), converter.get(1)),
+                    new DelayingTypeConverter(this, converter.get(3), false, Boolean.parseBoolean(converter.get(2))));
+        }
+        // the converters which have been added explicitly are kept
+        for (Map.Entry<TypeMapping, TypeConverter> entry : converters.entrySet()) {
+            typeMappings.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        for (List<String> fallback : index.getFallbacks()) {
+            addFallbackTypeConverter(new DelayingTypeConverter(this, fallback.get(2), true, Boolean.parseBoolean(fallback.get(1))),
+                    Boolean.parseBoolean(fallback.get(0)));
+        }
+        resolutions.invalidate();
+    }
+
+    /**
+     * Indexes the converters to the given type, or to a type derived from it, by the name of their from-type.
+     *
+     * When several converters from the same type qualify, the one to the exact type is preferred, then the
+     * one to the most specific type, and the name of the to-type decides between unrelated types, so that
+     * the choice does not depend on the order of the registered mappings.
+     */
+    protected Map<String, TypeConverter> indexDerivedConverters(Class<?> toType) {
+        Map<String, TypeMapping> mappings = new HashMap<>();
+        Map<String, TypeConverter> converters = new HashMap<>();
+        // a final type has no other derived type than itself, so the mappings do not need to be loaded
+        boolean exactOnly = Modifier.isFinal(toType.getModifiers()) && !toType.isArray();
+        for (Map.Entry<TypeMapping, TypeConverter> entry : typeMappings.entrySet()) {
+            TypeMapping mapping = entry.getKey();
+            String fromTypeName = mapping.getFromTypeName();
+            // skip Object based we do them last
+            if (fromTypeName == null || Object.class.getName().equals(fromTypeName)) {
+                continue;
+            }
+            if (toType.getName().equals(mapping.getToTypeName())
+                    || !exactOnly && toType.isAssignableFrom(mapping.getToType())) {
+                TypeMapping current = mappings.get(fromTypeName);
+                if (current == null || isPreferred(toType, mapping, current)) {
+                    mappings.put(fromTypeName, mapping);
+                    converters.put(fromTypeName, entry.getValue());
+                }
+            }
+        }
+        return converters;
+    }
+
+    private static boolean isPreferred(Class<?> toType, TypeMapping candidate, TypeMapping current) {
+        if (toType.getName().equals(current.getToTypeName())) {
+            return false;
+        } else if (toType.getName().equals(candidate.getToTypeName())) {
+            return true;
+        }
+        Class<?> candidateType = candidate.getToType();
+        Class<?> currentType = current.getToType();
+        if (currentType.isAssignableFrom(candidateType)) {
+            return true;
+        } else if (candidateType.isAssignableFrom(currentType)) {
+            return false;
+        }
+        return candidate.getToTypeName().compareTo(current.getToTypeName()) < 0;
+    }
+
+    protected CachingInjector<?> getCachingInjector(Class<?> type) {
+        CachingInjector<?> injector = injectors.get(type);
+        if (injector == null) {
+            injector = new CachingInjector<>(this, type);
+            CachingInjector<?> existing = injectors.putIfAbsent(type, injector);
+            if (existing != null) {
+                injector = existing;
+            }
+        }
+        return injector;
+    }
+
     protected void loadFallbackTypeConverters() throws IOException, ClassNotFoundException {
         List<TypeConverter> converters = factoryFinder.newInstances("FallbackTypeConverter", getInjector(), TypeConverter.class);
         for (TypeConverter converter : converters) {
@@ -479,6 +712,8 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
                 camelContextAware.setCamelContext(camelContext);
             }
         }
+        // the new fallback may convert the types remembered as misses
+        resolutions.invalidate();
     }
 
     @Override
@@ -512,8 +747,8 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
     }
 
     @Override
-    public Statistics getStatistics() {
-        return null;
+    public TypeConverterStatistics getStatistics() {
+        return statistics;
     }
 
     protected interface TypeMapping {
@@ -522,6 +757,10 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
 
         Class<?> getToType();
 
+        String getFromTypeName();
+
+        String getToTypeName();
+
     }
     
     protected static final class LazyTypeMapping implements TypeMapping {
@@ -552,37 +791,32 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
             return toType;
         }
 
+        @Override
+        public String getFromTypeName() {
+            return fromTypeStr;
+        }
+
+        @Override
+        public String getToTypeName() {
+            return toTypeStr;
+        }
+
         private Class<?> doLoad(String str) {
-            try {
-                switch (str) {
-                    case "byte":
-                        return byte.class;
-                    case "char":
-                        return char.class;
-                    case "boolean":
-                        return boolean.class;
-                    case "long":
-                        return long.class;
-                    case "int":
-                        return int.class;
-                    default:
-                        return Class.forName(str);
-                }
-            } catch (ClassNotFoundException e) {
-                throw new RuntimeCamelException("Unable to load class", e);
-            }
+            return TypeConverterIndex.loadClass(str);
         }
 
         @Override
         public boolean equals(Object object) {
+            // compare the names so that the classes are not loaded
             if (object instanceof LazyTypeMapping) {
                 LazyTypeMapping that = (LazyTypeMapping) object;
-                return Objects.equals(this.fromType.toString(), that.fromTypeStr)
-                        && Objects.equals(this.toType.toString(), that.toTypeStr);
+                return this.fromTypeStr.equals(that.fromTypeStr)
+                        && this.toTypeStr.equals(that.toTypeStr);
             }
             if (object instanceof TypeMapping) {
                 TypeMapping that = (TypeMapping) object;
-                return this.getFromType() == that.getFromType() && this.getToType() == that.getToType();
+                return that.getFromType() != null && this.fromTypeStr.equals(that.getFromType().getName())
+                        && this.toTypeStr.equals(that.getToType().getName());
             }
             return false;
         }
@@ -594,7 +828,7 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
 
         @Override
         public String toString() {
-            return "[" + fromType + "=>" + toType + "]";
+            return "[" + fromTypeStr + "=>" + toTypeStr + "]";
         }
 
     }
@@ -608,10 +842,10 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
             this.toType = toType;
             this.fromType = fromType;
 
-            // pre calculate hashcode
-            int hash = toType.hashCode();
+            // pre calculate hashcode, from the names to match the lazy mappings
+            int hash = toType.getName().hashCode();
             if (fromType != null) {
-                hash *= 37 + fromType.hashCode();
+                hash += fromType.getName().hashCode() * 31;
             }
             hashCode = hash;
         }
@@ -624,6 +858,14 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
             return toType;
         }
 
+        public String getFromTypeName() {
+            return fromType != null ? fromType.getName() : null;
+        }
+
+        public String getToTypeName() {
+            return toType.getName();
+        }
+
         @Override
         public boolean equals(Object object) {
             if (object instanceof SimpleTypeMapping) {
@@ -631,9 +873,7 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
                 return this.fromType == that.fromType && this.toType == that.toType;
             }
             if (object instanceof LazyTypeMapping) {
-                LazyTypeMapping that = (LazyTypeMapping) object;
-                return Objects.equals(this.fromType.toString(), that.fromTypeStr)
-                        && Objects.equals(this.toType.toString(), that.toTypeStr);
+                return object.equals(this);
             }
             if (object instanceof TypeMapping) {
                 TypeMapping that = (TypeMapping) object;
@@ -657,9 +897,118 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
         }
     }
 
+    /**
+     * The converters resolved for each pair of types, and the pairs which could not be converted.
+     *
+     * The tables are owned by the registry, rather than stored in a {@link ClassValue}: their values
+     * reference the registry through the converters, which would keep it reachable from classes such
+     * as <code>String</code> forever.  Each entry records the generation it was computed in, and is
+     * computed again once the registered converters have changed.
+     */
+    private final class Resolutions {
+        private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Resolution>> resolutions = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Class<?>, DerivedConverters> derivedConverters = new ConcurrentHashMap<>();
+        private final AtomicInteger misses = new AtomicInteger();
+        private volatile int generation;
+
+        Resolution resolve(Class<?> toType, Class<?> fromType) {
+            ConcurrentMap<Class<?>, Resolution> byToType = resolutions.get(fromType);
+            if (byToType == null) {
+                byToType = new ConcurrentHashMap<>();
+                ConcurrentMap<Class<?>, Resolution> existing = resolutions.putIfAbsent(fromType, byToType);
+                if (existing != null) {
+                    byToType = existing;
+                }
+            }
+            int generation = this.generation;
+            Resolution resolution = byToType.get(toType);
+            if (resolution == null || resolution.generation != generation) {
+                // the lookup is only done the first time, the converter being null if none is found
+                resolution = new Resolution(lookup(toType, fromType), generation);
+                byToType.put(toType, resolution);
+            }
+            return resolution;
+        }
+
+        /**
+         * Finds a converter to the given type or a derived type, from the closest super class or interface of fromType
+         */
+        TypeConverter findDerived(Class<?> toType, Class<?> fromType) {
+            int generation = this.generation;
+            DerivedConverters derived = derivedConverters.get(toType);
+            if (derived == null || derived.generation != generation) {
+                derived = new DerivedConverters(indexDerivedConverters(toType), generation);
+                derivedConverters.put(toType, derived);
+            }
+            Map<String, TypeConverter> converters = derived.converters;
+            if (converters.isEmpty()) {
+                return null;
+            }
+            Deque<Class<?>> types = new ArrayDeque<>();
+            Set<Class<?>> visited = new HashSet<>();
+            types.add(fromType);
+            Class<?> type;
+            while ((type = types.poll()) != null) {
+                if (visited.add(type)) {
+                    TypeConverter converter = converters.get(type.getName());
+                    if (converter != null) {
+                        return converter;
+                    }
+                    Class<?> superClass = type.getSuperclass();
+                    if (superClass != null && superClass != Object.class) {
+                        types.add(superClass);
+                    }
+                    Collections.addAll(types, type.getInterfaces());
+                }
+            }
+            return null;
+        }
+
+        void miss(Resolution resolution) {
+            if (!resolution.miss && resolution.generation == generation
+                    && misses.get() < MAX_MISSES && misses.incrementAndGet() <= MAX_MISSES) {
+                resolution.miss = true;
+            }
+        }
+
+        /**
+         * Discards the resolutions computed so far, including the misses
+         */
+        synchronized void invalidate() {
+            generation++;
+            misses.set(0);
+        }
+    }
+
+    private static final class Resolution {
+        final TypeConverter converter;
+        final int generation;
+        volatile boolean miss;
+        // the fallback converter which could convert this pair of types, if it cannot be promoted
+        volatile FallbackTypeConverter fallback;
+
+        Resolution(TypeConverter converter, int generation) {
+            this.converter = converter;
+            this.generation = generation;
+        }
+    }
+
+    private static final class DerivedConverters {
+        final Map<String, TypeConverter> converters;
+        final int generation;
+
+        DerivedConverters(Map<String, TypeConverter> converters, int generation) {
+            this.converters = converters;
+            this.generation = generation;
+        }
+    }
+
     static class FallbackTypeConverter {
         private final boolean canPromote;
         private final TypeConverter fallbackTypeConverter;
+        // the calls and the time spent in nanoseconds, when the statistics are enabled
+        final LongAdder invocations = new LongAdder();
+        final LongAdder time = new LongAdder();
 
         FallbackTypeConverter(TypeConverter fallbackTypeConverter, boolean canPromote) {
             this.canPromote = canPromote;
@@ -673,14 +1022,33 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
         public TypeConverter getFallbackTypeConverter() {
             return fallbackTypeConverter;
         }
+
+        void record(long nanos) {
+            invocations.increment();
+            time.add(nanos);
+        }
+
+        void reset() {
+            invocations.reset();
+            time.reset();
+        }
     }
 
+    /**
+     * A converter method listed in the index, which is only loaded when used
+     */
     static class DelayingTypeConverter implements TypeConverter {
+        final FastTypeConverterRegistry registry;
         final String signature;
-        TypeConverter converter;
+        final boolean fallback;
+        final boolean allowNull;
+        volatile TypeConverter converter;
 
-        public DelayingTypeConverter(String signature) {
+        public DelayingTypeConverter(FastTypeConverterRegistry registry, String signature, boolean fallback, boolean allowNull) {
+            this.registry = registry;
             this.signature = signature;
+            this.fallback = fallback;
+            this.allowNull = allowNull;
         }
 
         protected TypeConverter getConverter() {
@@ -691,13 +1059,27 @@ public class FastTypeConverterRegistry extends ServiceSupport implements TypeCon
         }
 
         private TypeConverter createConverter() {
-            // TODO
-            throw new UnsupportedOperationException();
+            Method method = TypeConverterIndex.loadMethod(signature);
+            if (Modifier.isStatic(method.getModifiers())) {
+                return fallback
+                        ? new StaticMethodFallbackTypeConverter(method, registry, allowNull)
+                        : new StaticMethodTypeConverter(method, allowNull);
+            } else {
+                CachingInjector<?> injector = registry.getCachingInjector(method.getDeclaringClass());
+                return fallback
+                        ? new InstanceMethodFallbackTypeConverter(injector, method, registry, allowNull)
+                        : new InstanceMethodTypeConverter(injector, method, registry, allowNull);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "DelayingTypeConverter: " + signature;
         }
 
         @Override
         public boolean allowNull() {
-            return getConverter().allowNull();
+            return allowNull;
         }
 
         @Override
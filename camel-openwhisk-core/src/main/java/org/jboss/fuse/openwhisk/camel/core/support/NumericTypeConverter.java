@@ -0,0 +1,181 @@
+package org.jboss.fuse.openwhisk.camel.core.support;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Converts the numbers, strings and booleans to the primitive types, as the optimised converter of camel-core does.
+ *
+ * The conversion is dispatched on the identity of the types, then the value is unboxed once
+ * as a <code>long</code> or <code>double</code> and narrowed to the target type, which gives
+ * the same results as the {@link Number} methods used by <code>ObjectConverter</code>.  Only the
+ * pairs of types which the optimised converter already converts before the registered converters
+ * are handled, so that a registered converter is never overridden.  Strings are only converted
+ * to <code>long</code> by the registry, which also parses the time patterns such as 5s.
+ */
+final class NumericTypeConverter {
+
+    private static final int NONE = 0;
+    private static final int STRING = 1;
+    private static final int DOUBLE = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int BOOLEAN = 5;
+    private static final int BIG_DECIMAL = 6;
+    private static final int FLOAT = 7;
+    private static final int SHORT = 8;
+    private static final int BYTE = 9;
+    private static final int BIG_INTEGER = 10;
+
+    private NumericTypeConverter() {
+    }
+
+    /**
+     * Converts the value to the given type, or returns <code>null</code> if the conversion is not handled here
+     */
+    static Object convertTo(Class<?> type, Object value) {
+        int to = code(type);
+        if (to == NONE || to == STRING || to == BIG_DECIMAL || to == BIG_INTEGER) {
+            // not converted by the optimised converter
+            return null;
+        }
+        int from = code(value.getClass());
+        if (from == to) {
+            // the value is the wrapper of the primitive type
+            return value;
+        }
+        switch (from) {
+            case STRING:
+                return fromString(to, (String) value);
+            case DOUBLE:
+                return fromDouble(to, (Double) value);
+            case INT:
+                if (to == BOOLEAN) {
+                    // as ObjectHelper.toBoolean()
+                    return (Integer) value > 0 ? Boolean.TRUE : Boolean.FALSE;
+                }
+                return fromLong(to, (Integer) value);
+            case LONG:
+                return fromLong(to, (Long) value);
+            case FLOAT:
+                return fromDouble(to, (Float) value);
+            case SHORT:
+                return fromLong(to, (Short) value);
+            case BYTE:
+                return fromLong(to, (Byte) value);
+            case BIG_DECIMAL:
+            case BIG_INTEGER:
+                return fromNumber(to, (Number) value);
+            default:
+                return null;
+        }
+    }
+
+    private static int code(Class<?> type) {
+        // the most frequent types first
+        if (type == String.class) {
+            return STRING;
+        } else if (type == Double.class || type == double.class) {
+            return DOUBLE;
+        } else if (type == Integer.class || type == int.class) {
+            return INT;
+        } else if (type == Long.class || type == long.class) {
+            return LONG;
+        } else if (type == Boolean.class || type == boolean.class) {
+            return BOOLEAN;
+        } else if (type == BigDecimal.class) {
+            return BIG_DECIMAL;
+        } else if (type == Float.class || type == float.class) {
+            return FLOAT;
+        } else if (type == Short.class || type == short.class) {
+            return SHORT;
+        } else if (type == Byte.class || type == byte.class) {
+            return BYTE;
+        } else if (type == BigInteger.class) {
+            return BIG_INTEGER;
+        } else {
+            return NONE;
+        }
+    }
+
+    private static Object fromString(int to, String value) {
+        switch (to) {
+            case DOUBLE:
+                return Double.valueOf(value);
+            case INT:
+                return Integer.valueOf(value);
+            case BOOLEAN:
+                // as ObjectHelper.toBoolean(), the other strings are not converted
+                if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+                    return Boolean.valueOf(value);
+                }
+                return null;
+            case FLOAT:
+                return Float.valueOf(value);
+            case SHORT:
+                return Short.valueOf(value);
+            case BYTE:
+                return Byte.valueOf(value);
+            default:
+                return null;
+        }
+    }
+
+    private static Object fromDouble(int to, double number) {
+        switch (to) {
+            case DOUBLE:
+                return Double.valueOf(number);
+            case INT:
+                return Integer.valueOf((int) number);
+            case LONG:
+                return Long.valueOf((long) number);
+            case FLOAT:
+                return Float.valueOf((float) number);
+            case SHORT:
+                return Short.valueOf((short) number);
+            case BYTE:
+                return Byte.valueOf((byte) number);
+            default:
+                return null;
+        }
+    }
+
+    private static Object fromLong(int to, long number) {
+        switch (to) {
+            case DOUBLE:
+                return Double.valueOf(number);
+            case INT:
+                return Integer.valueOf((int) number);
+            case LONG:
+                return Long.valueOf(number);
+            case FLOAT:
+                return Float.valueOf(number);
+            case SHORT:
+                return Short.valueOf((short) number);
+            case BYTE:
+                return Byte.valueOf((byte) number);
+            default:
+                return null;
+        }
+    }
+
+    private static Object fromNumber(int to, Number value) {
+        switch (to) {
+            case DOUBLE:
+                return Double.valueOf(value.doubleValue());
+            case INT:
+                return Integer.valueOf(value.intValue());
+            case LONG:
+                return Long.valueOf(value.longValue());
+            case FLOAT:
+                return Float.valueOf(value.floatValue());
+            case SHORT:
+                return Short.valueOf(value.shortValue());
+            case BYTE:
+                return Byte.valueOf(value.byteValue());
+            default:
+                return null;
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package org.jboss.fuse.openwhisk.camel.core.support;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the duration of the startup phases of the runtime.
+ *
+ * Recording a phase only costs a couple of {@link System#nanoTime()} calls.
+ * The phases are recorded again by each initialization of the action, while
+ * the time at which the runtime accepts connections is kept.  The JVM start time is only retrieved when the timeline is reported,
+ * as the management classes are rather costly to load.
+ */
+public final class StartupTimeline {
+
+    /**
+     * Include the timeline in the /init response
+     */
+    public static final boolean IN_RESPONSE = Boolean.getBoolean("camel.openwhisk.timeline.response");
+
+    public static final String JVM_TO_LISTEN = "jvmToListen";
+    public static final String PARSE = "parse";
+    public static final String DECODE = "decode";
+    public static final String CLASS_LOAD = "classLoad";
+    public static final String CONTEXT_CREATE = "contextCreate";
+    public static final String ROUTE_BUILD = "routeBuild";
+    public static final String CONTEXT_START = "contextStart";
+    public static final String INIT = "init";
+
+    private static final Map<String, Long> PHASES = new LinkedHashMap<>();
+
+    private static volatile long listenTime;
+
+    private StartupTimeline() {
+    }
+
+    /**
+     * Records the time at which the runtime accepts connections
+     */
+    public static void listening() {
+        if (listenTime == 0) {
+            listenTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Discards the phases recorded by a previous initialization
+     */
+    public static void reset() {
+        synchronized (PHASES) {
+            PHASES.clear();
+        }
+    }
+
+    /**
+     * Records the given phase, which started at the given {@link System#nanoTime()}
+     */
+    public static void record(String phase, long start) {
+        long duration = System.nanoTime() - start;
+        synchronized (PHASES) {
+            Long previous = PHASES.get(phase);
+            PHASES.put(phase, previous != null ? previous + duration : duration);
+        }
+    }
+
+    /**
+     * Returns the duration of the given phase in nanoseconds
+     */
+    public static long get(String phase) {
+        synchronized (PHASES) {
+            Long duration = PHASES.get(phase);
+            return duration != null ? duration : 0;
+        }
+    }
+
+    /**
+     * Returns the recorded phases, in milliseconds with one decimal
+     */
+    public static Map<String, Object> toMap() {
+        Map<String, Object> timeline = new LinkedHashMap<>();
+        if (listenTime != 0) {
+            // only known to the millisecond
+            timeline.put(JVM_TO_LISTEN, toMillis((listenTime - ManagementFactory.getRuntimeMXBean().getStartTime()) * 1000000));
+        }
+        synchronized (PHASES) {
+            for (Map.Entry<String, Long> entry : PHASES.entrySet()) {
+                timeline.put(entry.getKey(), toMillis(entry.getValue()));
+            }
+        }
+        return timeline;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 100000.0) / 10.0;
+    }
+
+}
@@ -0,0 +1,258 @@
+package org.jboss.fuse.openwhisk.camel.core.support;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.camel.Converter;
+import org.apache.camel.FallbackConverter;
+import org.apache.camel.RuntimeCamelException;
+import org.apache.camel.TypeConverter;
+import org.apache.camel.TypeConverterLoaderException;
+import org.apache.camel.impl.DefaultPackageScanClassResolver;
+import org.apache.camel.impl.converter.AnnotationTypeConverterLoader;
+import org.apache.camel.impl.converter.CoreTypeConverterLoader;
+import org.apache.camel.spi.TypeConverterLoader;
+import org.apache.camel.spi.TypeConverterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the type converters of the runtime, generated at build time.
+ *
+ * The index lists the converter methods of camel-core and of the packages named by the
+ * <code>META-INF/services/org/apache/camel/TypeConverter</code> files, as found by the
+ * camel loaders, so that the registry can register them without scanning nor loading
+ * their classes, and create them without reading their annotations.  Each line holds tab
+ * separated values:
+ * <ul>
+ *     <li><code>P name</code>: a package or class named by a service file</li>
+ *     <li><code>C toType fromType allowNull signature</code>: a converter method</li>
+ *     <li><code>F canPromote allowNull signature</code>: a fallback converter method</li>
+ * </ul>
+ * The signature of a method is written as <code>class#method(type,type)</code>.
+ */
+public final class TypeConverterIndex {
+
+    public static final String LOCATION = "META-INF/services/org/jboss/fuse/openwhisk/camel/TypeConverterIndex";
+
+    // always listed by camel-core although it does not contain any converter
+    private static final String CORE_PACKAGE = "org.apache.camel.core";
+
+    private final Set<String> packages = new LinkedHashSet<>();
+    private final Set<List<String>> converters = new LinkedHashSet<>();
+    private final Set<List<String>> fallbacks = new LinkedHashSet<>();
+
+    TypeConverterIndex() {
+    }
+
+    /**
+     * Generates the index in the given output directory
+     */
+    public static void main(String[] args) throws Exception {
+        Logger log = LoggerFactory.getLogger(TypeConverterIndex.class);
+        TypeConverterIndex index = new TypeConverterIndex();
+        index.collect(new CoreTypeConverterLoader() {
+            @Override
+            protected void registerTypeConverter(TypeConverterRegistry registry, Method method, Class<?> toType, Class<?> fromType, TypeConverter converter) {
+                index.addConverter(toType, fromType, method);
+            }
+
+            @Override
+            protected void registerFallbackTypeConverter(TypeConverterRegistry registry, TypeConverter converter, Method method) {
+                index.addFallback(method);
+            }
+        });
+        index.collect(new AnnotationTypeConverterLoader(new DefaultPackageScanClassResolver()) {
+            @Override
+            protected String[] findPackageNames() throws IOException {
+                String[] names = super.findPackageNames();
+                for (String name : names) {
+                    if (!CORE_PACKAGE.equals(name)) {
+                        index.packages.add(name);
+                    }
+                }
+                return names;
+            }
+
+            @Override
+            protected void registerTypeConverter(TypeConverterRegistry registry, Method method, Class<?> toType, Class<?> fromType, TypeConverter converter) {
+                index.addConverter(toType, fromType, method);
+            }
+
+            @Override
+            protected void registerFallbackTypeConverter(TypeConverterRegistry registry, TypeConverter converter, Method method) {
+                index.addFallback(method);
+            }
+        });
+        Path file = Paths.get(args[0]).resolve(LOCATION);
+        index.write(file);
+        log.info("Indexed {} converters and {} fallback converters in {}", index.converters.size(), index.fallbacks.size(), file);
+    }
+
+    private void collect(TypeConverterLoader loader) throws TypeConverterLoaderException {
+        // the registry is only given to the converters, which are not used
+        loader.load(null);
+    }
+
+    void addConverter(Class<?> toType, Class<?> fromType, Method method) {
+        boolean allowNull = method.getAnnotation(Converter.class).allowNull();
+        converters.add(entry(toType.getName(), fromType.getName(), Boolean.toString(allowNull), signature(method)));
+    }
+
+    void addFallback(Method method) {
+        FallbackConverter annotation = method.getAnnotation(FallbackConverter.class);
+        fallbacks.add(entry(Boolean.toString(annotation.canPromote()), Boolean.toString(annotation.allowNull()), signature(method)));
+    }
+
+    private static List<String> entry(String... values) {
+        List<String> entry = new ArrayList<>(values.length);
+        for (String value : values) {
+            entry.add(value);
+        }
+        return entry;
+    }
+
+    void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# Generated by " + TypeConverterIndex.class.getName() + "\n");
+            for (String name : packages) {
+                writer.write("P\t" + name + "\n");
+            }
+            for (List<String> converter : converters) {
+                writer.write("C\t" + String.join("\t", converter) + "\n");
+            }
+            for (List<String> fallback : fallbacks) {
+                writer.write("F\t" + String.join("\t", fallback) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Reads the index shipped with the runtime, or returns <code>null</code> if there is none
+     */
+    static TypeConverterIndex read() throws IOException {
+        URL url = TypeConverterIndex.class.getClassLoader().getResource(LOCATION);
+        return url != null ? read(url) : null;
+    }
+
+    static TypeConverterIndex read(URL url) throws IOException {
+        TypeConverterIndex index = new TypeConverterIndex();
+        try (InputStream is = url.openStream()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] values = line.split("\t");
+                switch (values[0]) {
+                    case "P":
+                        index.packages.add(values[1]);
+                        break;
+                    case "C":
+                        index.converters.add(entry(values[1], values[2], values[3], values[4]));
+                        break;
+                    case "F":
+                        index.fallbacks.add(entry(values[1], values[2], values[3]));
+                        break;
+                    default:
+                        throw new IOException("Invalid type converter index entry: " + line);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The packages and classes named by the service files, which do not need to be scanned
+     */
+    Set<String> getPackages() {
+        return packages;
+    }
+
+    /**
+     * The converters, as <code>toType</code>, <code>fromType</code>, <code>allowNull</code> and signature
+     */
+    Set<List<String>> getConverters() {
+        return converters;
+    }
+
+    /**
+     * The fallback converters, as <code>canPromote</code>, <code>allowNull</code> and signature, in registration order
+     */
+    Set<List<String>> getFallbacks() {
+        return fallbacks;
+    }
+
+    static String signature(Method method) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(method.getDeclaringClass().getName()).append('#').append(method.getName()).append('(');
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(types[i].getName());
+        }
+        return sb.append(')').toString();
+    }
+
+    static Method loadMethod(String signature) {
+        int hash = signature.indexOf('#');
+        int paren = signature.indexOf('(', hash);
+        String[] names = signature.substring(paren + 1, signature.length() - 1).split(",");
+        Class<?>[] types = new Class<?>[names[0].isEmpty() ? 0 : names.length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = loadClass(names[i]);
+        }
+        try {
+            return loadClass(signature.substring(0, hash)).getMethod(signature.substring(hash + 1, paren), types);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeCamelException("Unable to find converter method " + signature, e);
+        }
+    }
+
+    static Class<?> loadClass(String name) {
+        switch (name) {
+            case "byte":
+                return byte.class;
+            case "char":
+                return char.class;
+            case "boolean":
+                return boolean.class;
+            case "short":
+                return short.class;
+            case "int":
+                return int.class;
+            case "long":
+                return long.class;
+            case "float":
+                return float.class;
+            case "double":
+                return double.class;
+            case "void":
+                return void.class;
+            default:
+                try {
+                    return Class.forName(name, false, TypeConverterIndex.class.getClassLoader());
+                } catch (ClassNotFoundException e) {
+                    throw new RuntimeCamelException("Unable to load class", e);
+                }
+        }
+    }
+
+}
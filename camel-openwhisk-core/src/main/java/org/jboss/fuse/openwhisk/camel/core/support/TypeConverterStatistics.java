@@ -0,0 +1,278 @@
+package org.jboss.fuse.openwhisk.camel.core.support;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.camel.TypeConverter;
+import org.apache.camel.spi.TypeConverterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Statistics of the conversions of a {@link FastTypeConverterRegistry}, for each pair of types.
+ *
+ * The counters of a pair are looked up without locking nor allocating, and updated with
+ * {@link LongAdder}s so that concurrent activations do not contend on them.  The time spent
+ * in each fallback converter is recorded too, as the fallback chain is the slow path.
+ *
+ * The reports of all the statistics in use are logged by a single thread and shutdown hook
+ * per JVM, which only keep weak references to them.
+ */
+public final class TypeConverterStatistics implements TypeConverterRegistry.Statistics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TypeConverterStatistics.class);
+
+    private static final Queue<WeakReference<TypeConverterStatistics>> REPORTED = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicBoolean REPORTING = new AtomicBoolean();
+
+    private final List<FastTypeConverterRegistry.FallbackTypeConverter> fallbackConverters;
+    private final Queue<PairStatistics> pairs = new ConcurrentLinkedQueue<>();
+    // not stored in a ClassValue, which would keep the statistics, and the registry through the
+    // fallback converters, reachable from the converted classes
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, PairStatistics>> pairsByType = new ConcurrentHashMap<>();
+    private final LongAdder noop = new LongAdder();
+    private volatile boolean statisticsEnabled;
+    private final AtomicBoolean reported = new AtomicBoolean();
+    // the number of attempts at the time of the last periodic report
+    private long reportedAttempts;
+
+    TypeConverterStatistics(List<FastTypeConverterRegistry.FallbackTypeConverter> fallbackConverters) {
+        this.fallbackConverters = fallbackConverters;
+    }
+
+    /**
+     * Returns the counters of the given pair of types
+     */
+    PairStatistics get(Class<?> toType, Class<?> fromType) {
+        ConcurrentMap<Class<?>, PairStatistics> byToType = pairsByType.get(fromType);
+        if (byToType == null) {
+            byToType = new ConcurrentHashMap<>();
+            ConcurrentMap<Class<?>, PairStatistics> existing = pairsByType.putIfAbsent(fromType, byToType);
+            if (existing != null) {
+                byToType = existing;
+            }
+        }
+        PairStatistics statistics = byToType.get(toType);
+        if (statistics == null) {
+            statistics = new PairStatistics(fromType.getName(), toType.getName());
+            PairStatistics existing = byToType.putIfAbsent(toType, statistics);
+            if (existing != null) {
+                statistics = existing;
+            } else {
+                pairs.add(statistics);
+            }
+        }
+        return statistics;
+    }
+
+    void noop() {
+        noop.increment();
+    }
+
+    @Override
+    public long getNoopCounter() {
+        return noop.sum();
+    }
+
+    @Override
+    public long getAttemptCounter() {
+        long attempts = getNoopCounter();
+        for (PairStatistics pair : pairs) {
+            attempts += pair.total();
+        }
+        return attempts;
+    }
+
+    @Override
+    public long getHitCounter() {
+        long hits = 0;
+        for (PairStatistics pair : pairs) {
+            hits += pair.hits.sum() + pair.fallbacks.sum();
+        }
+        return hits;
+    }
+
+    @Override
+    public long getBaseHitCounter() {
+        long hits = 0;
+        for (PairStatistics pair : pairs) {
+            hits += pair.baseHits.sum();
+        }
+        return hits;
+    }
+
+    @Override
+    public long getMissCounter() {
+        long misses = 0;
+        for (PairStatistics pair : pairs) {
+            misses += pair.misses.sum();
+        }
+        return misses;
+    }
+
+    @Override
+    public long getFailedCounter() {
+        long failures = 0;
+        for (PairStatistics pair : pairs) {
+            failures += pair.failures.sum();
+        }
+        return failures;
+    }
+
+    @Override
+    public void reset() {
+        noop.reset();
+        for (PairStatistics pair : pairs) {
+            pair.reset();
+        }
+        for (FastTypeConverterRegistry.FallbackTypeConverter fallback : fallbackConverters) {
+            fallback.reset();
+        }
+    }
+
+    @Override
+    public boolean isStatisticsEnabled() {
+        return statisticsEnabled;
+    }
+
+    @Override
+    public void setStatisticsEnabled(boolean statisticsEnabled) {
+        this.statisticsEnabled = statisticsEnabled;
+        if (statisticsEnabled && reported.compareAndSet(false, true)) {
+            // the containers are killed without running the shutdown hooks, so the report is logged periodically too
+            reportPeriodically(this, FastTypeConverterRegistry.STATISTICS_TOP, FastTypeConverterRegistry.STATISTICS_INTERVAL);
+        }
+    }
+
+    /**
+     * Logs the report of the given statistics every <code>interval</code> milliseconds if conversions were made
+     * in the meantime, and when the JVM exits, for as long as the statistics are in use
+     */
+    static void reportPeriodically(TypeConverterStatistics statistics, final int top, final long interval) {
+        REPORTED.add(new WeakReference<>(statistics));
+        if (!REPORTING.compareAndSet(false, true)) {
+            return;
+        }
+        if (interval > 0) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            Thread.sleep(interval);
+                            reportAll(top, true);
+                        }
+                    } catch (InterruptedException e) {
+                        // stop reporting
+                    }
+                }
+            }, "TypeConverterStatistics");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                reportAll(top, false);
+            }
+        }, "TypeConverterStatistics"));
+    }
+
+    private static void reportAll(int top, boolean changedOnly) {
+        for (Iterator<WeakReference<TypeConverterStatistics>> it = REPORTED.iterator(); it.hasNext();) {
+            TypeConverterStatistics statistics = it.next().get();
+            if (statistics == null) {
+                it.remove();
+                continue;
+            }
+            long attempts = statistics.getAttemptCounter();
+            if (!changedOnly || attempts != statistics.reportedAttempts) {
+                statistics.reportedAttempts = attempts;
+                LOG.info(statistics.report(top));
+            }
+        }
+    }
+
+    /**
+     * Reports the given number of pairs of types converted the most, and the time spent in the fallback converters
+     */
+    public String report(int top) {
+        List<PairStatistics> sorted = new ArrayList<>(pairs);
+        Collections.sort(sorted, new Comparator<PairStatistics>() {
+            @Override
+            public int compare(PairStatistics p1, PairStatistics p2) {
+                return Long.compare(p2.total(), p1.total());
+            }
+        });
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ENGLISH, "Type conversions: %d attempts, %d noop, %d base hits, %d hits, %d misses, %d failures%n",
+                getAttemptCounter(), getNoopCounter(), getBaseHitCounter(), getHitCounter(), getMissCounter(), getFailedCounter()));
+        sb.append(String.format(Locale.ENGLISH, "%10s %10s %10s %10s %10s %10s  %s%n",
+                "base hits", "hits", "fallbacks", "misses", "promotions", "failures", "from => to"));
+        for (PairStatistics pair : sorted.subList(0, Math.min(top, sorted.size()))) {
+            sb.append(String.format(Locale.ENGLISH, "%10d %10d %10d %10d %10d %10d  %s => %s%n",
+                    pair.baseHits.sum(), pair.hits.sum(), pair.fallbacks.sum(), pair.misses.sum(),
+                    pair.promotions.sum(), pair.failures.sum(), pair.fromType, pair.toType));
+        }
+        sb.append(String.format(Locale.ENGLISH, "%10s %10s %10s  %s%n", "calls", "total ms", "avg us", "fallback converter"));
+        for (FastTypeConverterRegistry.FallbackTypeConverter fallback : fallbackConverters) {
+            long calls = fallback.invocations.sum();
+            long time = fallback.time.sum();
+            TypeConverter converter = fallback.getFallbackTypeConverter();
+            String name = converter instanceof FastTypeConverterRegistry.DelayingTypeConverter
+                    ? ((FastTypeConverterRegistry.DelayingTypeConverter) converter).signature
+                    : converter.getClass().getName();
+            sb.append(String.format(Locale.ENGLISH, "%10d %10.1f %10.1f  %s%n",
+                    calls, time / 1000000.0, calls > 0 ? time / 1000.0 / calls : 0.0, name));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Counters of the conversions of a pair of types.
+     *
+     * Each conversion is counted once: converted by the optimised converter (base hits), by a registered
+     * converter (hits) or by a fallback converter (fallbacks), not converted (misses), or failed.
+     */
+    static final class PairStatistics {
+        final String fromType;
+        final String toType;
+        final LongAdder hits = new LongAdder();
+        final LongAdder baseHits = new LongAdder();
+        final LongAdder fallbacks = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder promotions = new LongAdder();
+        final LongAdder failures = new LongAdder();
+
+        PairStatistics(String fromType, String toType) {
+            this.fromType = fromType;
+            this.toType = toType;
+        }
+
+        long total() {
+            return baseHits.sum() + hits.sum() + fallbacks.sum() + misses.sum() + failures.sum();
+        }
+
+        void reset() {
+            hits.reset();
+            baseHits.reset();
+            fallbacks.reset();
+            misses.reset();
+            promotions.reset();
+            failures.reset();
+        }
+    }
+
+}
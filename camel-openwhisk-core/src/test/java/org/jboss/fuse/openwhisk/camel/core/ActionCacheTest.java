@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ActionCacheTest {
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("action-cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testStoreAndGet() throws IOException {
+        Path directory = root.resolve("parent/cache");
+        ActionCache cache = ActionCache.open(directory);
+        assertNotNull(cache);
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(directory));
+
+        byte[] jar = "not really a jar".getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = Base64.getEncoder().encode(jar);
+        String key = ActionCache.key(encoded, 0, encoded.length);
+        assertEquals(64, key.length());
+        assertNull(cache.getJar(key));
+        assertNull(cache.getLines(key, ActionCache.CLASSES));
+
+        Path stored = cache.storeJar(key, encoded, 0, encoded.length);
+        assertEquals(stored, cache.getJar(key));
+        assertArrayEquals(jar, Files.readAllBytes(stored));
+        cache.storeLines(key, ActionCache.CLASSES, Arrays.asList("a.A", "b.B"));
+        assertEquals(Arrays.asList("a.A", "b.B"), cache.getLines(key, ActionCache.CLASSES));
+
+        // the existing directory is reused
+        assertEquals(stored, ActionCache.open(directory).getJar(key));
+    }
+
+    @Test
+    public void testSharedDirectory() throws IOException {
+        Files.setPosixFilePermissions(root, PosixFilePermissions.fromString("rwxrwxr-x"));
+        assertNull(ActionCache.open(root));
+        Files.setPosixFilePermissions(root, PosixFilePermissions.fromString("rwx---r-x"));
+        assertNull(ActionCache.open(root));
+        Files.setPosixFilePermissions(root, PosixFilePermissions.fromString("rwx------"));
+        assertNotNull(ActionCache.open(root));
+    }
+
+    @Test
+    public void testNotADirectory() throws IOException {
+        Path file = Files.createFile(root.resolve("file"));
+        assertNull(ActionCache.open(file));
+        Path link = Files.createSymbolicLink(root.resolve("link"), Files.createDirectory(root.resolve("target")));
+        assertNull(ActionCache.open(link));
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MemoryJarTest {
+
+    private static final byte[] TEXT = "Hello, world! Hello, world! Hello, world!".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testStoredAndDeflatedEntries() throws IOException {
+        byte[] random = new byte[100000];
+        new Random(42).nextBytes(random);
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Main-Class", "Action");
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (JarOutputStream jos = new JarOutputStream(baos, manifest)) {
+            jos.putNextEntry(new ZipEntry("dir/"));
+            putDeflated(jos, "dir/deflated.txt", TEXT);
+            putStored(jos, "dir/stored.txt", TEXT);
+            putDeflated(jos, "random.bin", random);
+            putStored(jos, "empty.txt", new byte[0]);
+        }
+
+        MemoryJar jar = new MemoryJar(baos.toByteArray());
+        assertArrayEquals(TEXT, jar.read("dir/deflated.txt"));
+        assertArrayEquals(TEXT, jar.read("dir/stored.txt"));
+        assertArrayEquals(random, jar.read("random.bin"));
+        assertArrayEquals(new byte[0], jar.read("empty.txt"));
+        assertNull(jar.read("missing.txt"));
+        assertEquals("Action", jar.getManifest().getMainAttributes().getValue("Main-Class"));
+        assertEquals(Arrays.asList("dir/deflated.txt", "dir/stored.txt"), sorted(jar.list("dir/")));
+
+        URL url = jar.getResource("dir/deflated.txt");
+        try (InputStream is = url.openStream()) {
+            assertArrayEquals(TEXT, readAll(is));
+        }
+        assertNull(jar.getResource("missing.txt"));
+    }
+
+    @Test
+    public void testArchiveComment() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+            putDeflated(zos, "a.txt", TEXT);
+            zos.setComment("a comment which follows the end of central directory header");
+        }
+        assertArrayEquals(TEXT, new MemoryJar(baos.toByteArray()).read("a.txt"));
+    }
+
+    @Test
+    public void testZip64() throws IOException {
+        // the number of entries only fits in the Zip64 end header
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+            for (int i = 0; i < 0xFFFF; i++) {
+                zos.putNextEntry(new ZipEntry(Integer.toString(i)));
+            }
+        }
+        try {
+            new MemoryJar(baos.toByteArray());
+            fail();
+        } catch (ZipException e) {
+            // the runtime falls back to a temporary file
+            assertEquals("Zip64 archives are not supported", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testTypeConverters() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+            putDeflated(zos, "a.txt", TEXT);
+        }
+        assertFalse(new MemoryJar(baos.toByteArray()).hasTypeConverters());
+
+        // the runtime loads the jar from a temporary file, for camel to scan the packages
+        baos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+            putDeflated(zos, MemoryJar.TYPE_CONVERTER_SERVICE, "org.example.converters".getBytes(StandardCharsets.UTF_8));
+        }
+        assertTrue(new MemoryJar(baos.toByteArray()).hasTypeConverters());
+    }
+
+    @Test
+    public void testInvalidArchives() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+            putDeflated(zos, "a.txt", TEXT);
+        }
+        byte[] data = baos.toByteArray();
+        for (byte[] invalid : new byte[][] { new byte[0], TEXT, Arrays.copyOf(data, data.length - 10) }) {
+            try {
+                new MemoryJar(invalid);
+                fail();
+            } catch (ZipException e) {
+                // expected
+            }
+        }
+
+        // the content of the entries is only checked when read
+        byte[] corrupted = data.clone();
+        corrupted[35] ^= 0xFF;
+        MemoryJar jar = new MemoryJar(corrupted);
+        try {
+            jar.read("a.txt");
+            fail();
+        } catch (ZipException e) {
+            // expected
+        }
+    }
+
+    private static void putDeflated(ZipOutputStream zos, String name, byte[] content) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(content);
+        zos.closeEntry();
+    }
+
+    private static void putStored(ZipOutputStream zos, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setCrc(crc.getValue());
+        zos.putNextEntry(entry);
+        zos.write(content);
+        zos.closeEntry();
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int nb;
+        while ((nb = is.read(buffer)) >= 0) {
+            baos.write(buffer, 0, nb);
+        }
+        return baos.toByteArray();
+    }
+
+    private static List<String> sorted(List<String> names) {
+        Collections.sort(names);
+        return names;
+    }
+
+}
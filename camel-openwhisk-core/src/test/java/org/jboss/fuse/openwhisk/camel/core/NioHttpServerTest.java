@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.fuse.openwhisk.camel.core.json.JsonWriter;
+import org.jboss.fuse.openwhisk.camel.core.json.Utf8JsonReader;
+import org.jboss.fuse.openwhisk.camel.core.json.Utf8Output;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NioHttpServerTest {
+
+    private static final String UNINITIALIZED = "{\"error\":\"Cannot invoke an uninitialized action.\"}";
+
+    private CamelRuntime runtime;
+    private NioHttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        runtime = new CamelRuntime(0);
+        server = new NioHttpServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), runtime);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        runtime.stop();
+    }
+
+    @Test
+    public void testRequestWithoutHeaders() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "POST /run HTTP/1.1\r\n\r\n");
+            assertEquals("HTTP/1.1 502 Bad Gateway", readStatus(socket.getInputStream()));
+            assertEquals(UNINITIALIZED, readBody(socket.getInputStream()));
+        }
+    }
+
+    @Test
+    public void testKeepAlive() throws IOException {
+        try (Socket socket = connect()) {
+            // both requests are sent at once and read from the same buffer
+            send(socket, "POST /run?blocking=true HTTP/1.1\r\nContent-Length: 2\r\n\r\n{}"
+                    + "POST /run HTTP/1.1\r\ncontent-length: 2\r\nConnection: keep-alive\r\n\r\n{}");
+            for (int i = 0; i < 2; i++) {
+                assertEquals("HTTP/1.1 502 Bad Gateway", readStatus(socket.getInputStream()));
+                assertEquals(UNINITIALIZED, readBody(socket.getInputStream()));
+            }
+            send(socket, "POST /run HTTP/1.1\r\nContent-Length: 2\r\n\r\n{}");
+            assertEquals("HTTP/1.1 502 Bad Gateway", readStatus(socket.getInputStream()));
+        }
+    }
+
+    @Test
+    public void testMethodNotAllowed() throws IOException {
+        assertEquals("HTTP/1.1 405 Method Not Allowed", request("GET /run HTTP/1.1\r\nHost: localhost\r\n\r\n"));
+        assertEquals("HTTP/1.1 405 Method Not Allowed", request("PUT /init HTTP/1.1\r\nContent-Length: 2\r\n\r\n{}"));
+    }
+
+    @Test
+    public void testNotFound() throws IOException {
+        assertEquals("HTTP/1.1 404 Not Found", request("POST /other HTTP/1.1\r\nContent-Length: 2\r\n\r\n{}"));
+    }
+
+    @Test
+    public void testInvalidRequests() throws IOException {
+        assertEquals("HTTP/1.1 400 Bad Request", request("POST\r\n\r\n"));
+        assertEquals("HTTP/1.1 400 Bad Request", request("POST /run HTTP/1.1\r\nContent-Length: x\r\n\r\n"));
+    }
+
+    @Test
+    public void testChunkedRequest() throws IOException {
+        assertEquals("HTTP/1.1 501 Not Implemented",
+                request("POST /run HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n2\r\n{}\r\n0\r\n\r\n"));
+        assertEquals("HTTP/1.1 501 Not Implemented",
+                request("POST /run HTTP/1.1\r\nTransfer-Encoding: gzip, Chunked\r\n\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    public void testIdentityTransferEncoding() throws IOException {
+        assertEquals("HTTP/1.1 502 Bad Gateway",
+                request("POST /run HTTP/1.1\r\nTransfer-Encoding: identity\r\nContent-Length: 2\r\n\r\n{}"));
+    }
+
+    @Test
+    public void testExpectContinue() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "POST /run HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: 2\r\n\r\n");
+            assertEquals("HTTP/1.1 100 Continue", readStatus(socket.getInputStream()));
+            assertEquals("", readLine(socket.getInputStream()));
+            send(socket, "{}");
+            assertEquals("HTTP/1.1 502 Bad Gateway", readStatus(socket.getInputStream()));
+        }
+    }
+
+    @Test
+    public void testAnnouncedLengthNotTrusted() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "POST /run HTTP/1.1\r\nContent-Length: 2000000000\r\n\r\n{}");
+            socket.shutdownOutput();
+            // the body is incomplete, so the connection is closed without a response
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void testLargeResponse() throws IOException {
+        List<String> items = new ArrayList<>();
+        for (int i = 0, size = 0; size <= 2 * Utf8JsonReader.MAX_POOLED_BUFFER_SIZE; i++) {
+            String item = "item-" + i;
+            items.add(item);
+            size += item.length() + 3;
+        }
+        final Map<String, ?> content = Collections.singletonMap("items", items);
+        CamelRuntime large = new CamelRuntime(0) {
+            @Override
+            void run(Request request) throws IOException {
+                request.respond(200, content);
+            }
+        };
+        NioHttpServer largeServer = new NioHttpServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), large);
+        largeServer.start();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), largeServer.getAddress().getPort())) {
+            socket.setSoTimeout(10000);
+            Utf8Output expected = new Utf8Output();
+            JsonWriter.write(expected, content);
+            for (int i = 0; i < 2; i++) {
+                send(socket, "POST /run HTTP/1.1\r\nContent-Length: 2\r\n\r\n{}");
+                assertEquals("HTTP/1.1 200 OK", readStatus(socket.getInputStream()));
+                assertEquals(new String(expected.array(), 0, expected.size(), StandardCharsets.UTF_8),
+                        readChunkedBody(socket.getInputStream()));
+            }
+        } finally {
+            largeServer.stop();
+            large.stop();
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getAddress().getPort());
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    private String request(String request) throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, request);
+            return readStatus(socket.getInputStream());
+        }
+    }
+
+    private static void send(Socket socket, String request) throws IOException {
+        socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+    }
+
+    private static String readStatus(InputStream is) throws IOException {
+        return readLine(is);
+    }
+
+    /**
+     * Reads the headers and the body of a response whose status line has been read
+     */
+    private static String readBody(InputStream is) throws IOException {
+        int length = -1;
+        String line;
+        while (!(line = readLine(is)).isEmpty()) {
+            if (line.startsWith("Content-Length: ")) {
+                length = Integer.parseInt(line.substring("Content-Length: ".length()));
+            }
+        }
+        byte[] body = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int nb = is.read(body, read, length - read);
+            if (nb < 0) {
+                throw new IOException("Unexpected end of response");
+            }
+            read += nb;
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the headers and the chunks of a response whose status line has been read
+     */
+    private static String readChunkedBody(InputStream is) throws IOException {
+        boolean chunked = false;
+        String line;
+        while (!(line = readLine(is)).isEmpty()) {
+            chunked |= line.equals("Transfer-Encoding: chunked");
+        }
+        assertTrue(chunked);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int length;
+        while ((length = Integer.parseInt(readLine(is), 16)) > 0) {
+            for (int i = 0; i < length; i++) {
+                body.write(is.read());
+            }
+            assertEquals("", readLine(is));
+        }
+        assertEquals("", readLine(is));
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String readLine(InputStream is) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = is.read()) != '\n') {
+            if (c < 0) {
+                throw new IOException("Unexpected end of response");
+            }
+            if (c != '\r') {
+                sb.append((char) c);
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core.json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonNumbersTest {
+
+    private static final String[] BOUNDARIES = {
+            "0", "-0", "0.0", "-0.0", "1", "-1", "0.1", "0.3", "1e23", "1E10", "1e+10", "1e-10",
+            // largest values, and overflows to infinity
+            "1.7976931348623157e308", "1.7976931348623158e308", "1.7976931348623159e308", "1e308", "1e309",
+            // smallest subnormal, and underflows to zero
+            "4.9e-324", "5e-324", "2.4703282292062327e-324", "2.4703282292062328e-324", "1e-400",
+            // around the smallest normal
+            "2.2250738585072011e-308", "2.2250738585072014e-308",
+            // halfway cases, which are rounded to even
+            "9007199254740993", "9007199254740992.5", "9007199254740995",
+            "1.00000000000000011102230246251565404236316680908203125",
+            "1.00000000000000011102230246251565404236316680908203124",
+            "1.00000000000000011102230246251565404236316680908203126",
+            // more digits than the mantissa can hold
+            "123456789012345678901234567890", "0.000000000000000000000001234567890123456789",
+            "9223372036854775807", "9223372036854775808", "-9223372036854775808", "18446744073709551615",
+    };
+
+    @Test
+    public void testBoundaries() {
+        for (String number : BOUNDARIES) {
+            assertSameDouble(number);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                assertSameDouble(Double.toString(value));
+            }
+            assertSameDouble(Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20)));
+        }
+    }
+
+    @Test
+    public void testRandomDigits() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder sb = new StringBuilder();
+            if (random.nextBoolean()) {
+                sb.append('-');
+            }
+            appendDigits(sb, random, 1 + random.nextInt(25));
+            if (random.nextBoolean()) {
+                sb.append('.');
+                appendDigits(sb, random, 1 + random.nextInt(25));
+            }
+            if (random.nextBoolean()) {
+                sb.append('e').append(random.nextInt(700) - 350);
+            }
+            assertSameDouble(sb.toString());
+        }
+    }
+
+    @Test
+    public void testTypedNumbers() {
+        assertEquals(12, JsonNumbers.parse("12", NumberMode.TYPED));
+        assertEquals(-2147483648, JsonNumbers.parse("-2147483648", NumberMode.TYPED));
+        assertEquals(2147483648L, JsonNumbers.parse("2147483648", NumberMode.TYPED));
+        assertEquals(Long.MIN_VALUE, JsonNumbers.parse("-9223372036854775808", NumberMode.TYPED));
+        assertEquals(new BigInteger("9223372036854775808"), JsonNumbers.parse("9223372036854775808", NumberMode.TYPED));
+        assertEquals(1500.0, JsonNumbers.parse("1.5e3", NumberMode.TYPED));
+        assertEquals(0.5, JsonNumbers.parse("0.5", NumberMode.TYPED));
+    }
+
+    @Test
+    public void testBigDecimalNumbers() {
+        assertEquals(new BigDecimal("1.50"), JsonNumbers.parse("1.50", NumberMode.BIG_DECIMAL));
+        assertEquals(new BigDecimal("-1.5e-3"), JsonNumbers.parse("-1.5e-3", NumberMode.BIG_DECIMAL));
+        assertEquals(new BigDecimal("0.12345678901234567890123"), JsonNumbers.parse("0.12345678901234567890123", NumberMode.BIG_DECIMAL));
+        assertEquals(7, JsonNumbers.parse("7", NumberMode.BIG_DECIMAL));
+    }
+
+    private static void appendDigits(StringBuilder sb, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            sb.append((char) ('0' + random.nextInt(10)));
+        }
+    }
+
+    private static void assertSameDouble(String number) {
+        long expected = Double.doubleToRawLongBits(Double.parseDouble(number));
+        assertEquals(number, expected, Double.doubleToRawLongBits(JsonNumbers.parse(number, NumberMode.DOUBLE).doubleValue()));
+        // the bytes are parsed in place, within a larger buffer
+        byte[] bytes = ("[" + number + "]").getBytes(StandardCharsets.US_ASCII);
+        Number parsed = JsonNumbers.parse(bytes, 1, bytes.length - 1, NumberMode.DOUBLE);
+        assertEquals(number, expected, Double.doubleToRawLongBits(parsed.doubleValue()));
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core.json;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonTapeTest {
+
+    @Test
+    public void testSameAsUtf8JsonReader() throws IOException {
+        for (NumberMode mode : NumberMode.values()) {
+            byte[] bytes = Utf8JsonReaderTest.DOCUMENT.getBytes(StandardCharsets.UTF_8);
+            assertEquals(Utf8JsonReader.read(bytes, 0, bytes.length, mode), JsonTape.parse(bytes, 0, bytes.length, mode));
+        }
+    }
+
+    @Test
+    public void testMalformed() {
+        for (String json : Utf8JsonReaderTest.MALFORMED) {
+            try {
+                parse(json);
+                fail("Expected an error for " + json);
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().matches(".* at \\d+:\\d+"));
+            }
+        }
+    }
+
+    @Test
+    public void testDuplicateNames() throws IOException {
+        Map<?, ?> map = (Map<?, ?>) parse("{\"a\":1,\"b\":2,\"a\":3}");
+        // the last value wins, as when reading into a map
+        assertEquals(3.0, map.get("a"));
+        assertEquals(2, map.size());
+        assertEquals(2, map.entrySet().size());
+    }
+
+    @Test
+    public void testWriteRaw() throws IOException {
+        String json = "{\"b\" : [ 1.50, {\"c\":\"\\u00e9\"} ], \"a\" : null}";
+        Map<?, ?> map = (Map<?, ?>) parse(json);
+        ((List<?>) map.get("b")).get(1);
+        // the views which were only read are written as their original bytes
+        assertEquals(json.substring(json.indexOf('{')), write(map));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testModifications() throws IOException {
+        Map<String, Object> map = (Map<String, Object>) parse("{\"a\":1,\"b\":[1,2],\"c\":\"x\",\"d\":null}");
+        List<Object> list = (List<Object>) map.get("b");
+        list.add(3);
+        assertEquals("{\"a\":1.0,\"b\":[1.0,2.0,3],\"c\":\"x\",\"d\":null}", write(map));
+        map.put("e", true);
+        map.remove("a");
+        assertEquals("{\"b\":[1.0,2.0,3],\"c\":\"x\",\"d\":null,\"e\":true}", write(map));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEntrySetModifications() throws IOException {
+        Map<String, Object> map = (Map<String, Object>) parse("{\"a\":1,\"b\":[1,2],\"c\":\"x\",\"d\":null}");
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            if (entry.getKey().equals("c")) {
+                assertEquals("x", entry.setValue("y"));
+                assertEquals("y", entry.getValue());
+            }
+        }
+        assertEquals("y", map.get("c"));
+
+        map = (Map<String, Object>) parse("{\"a\":1,\"b\":[1,2],\"c\":\"x\",\"d\":null}");
+        Iterator<Map.Entry<String, Object>> iterator = map.entrySet().iterator();
+        iterator.next();
+        iterator.remove();
+        try {
+            iterator.remove();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        iterator.next();
+        iterator.next();
+        iterator.remove();
+        assertNull(iterator.next().getValue());
+        assertFalse(iterator.hasNext());
+        // the array which was not modified is still written as its original bytes
+        assertEquals("{\"b\":[1,2],\"d\":null}", write(map));
+
+        map = (Map<String, Object>) parse("{\"a\":1,\"b\":[1,2],\"c\":\"x\",\"d\":null}");
+        assertTrue(map.entrySet().removeIf(new Predicate<Map.Entry<String, Object>>() {
+            @Override
+            public boolean test(Map.Entry<String, Object> entry) {
+                return entry.getValue() == null || entry.getKey().equals("a");
+            }
+        }));
+        map.keySet().remove("b");
+        assertEquals("{\"c\":\"x\"}", write(map));
+    }
+
+    private static Object parse(String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return JsonTape.parse(bytes, 0, bytes.length);
+    }
+
+    private static String write(Object value) throws IOException {
+        Utf8Output output = new Utf8Output();
+        JsonWriter.write(output, value);
+        return new String(output.array(), 0, output.size(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Utf8JsonReaderTest {
+
+    static final String DOCUMENT = "{\"a\":[1,2.5,-3e2,true,false,null,\"x\\u00e9\\n\\\"\u00e9\u20ac\ud83d\ude00\"],"
+            + "\"b\":{\"c\":{},\"d\":[]},\"e\":\"\"}";
+
+    static final String[] MALFORMED = {
+            "", "{", "}", "[", "{\"a\":}", "{\"a\" 1}", "{a:1}", "{\"a\":1,}", "[1,]", "[1 2]",
+            "tru", "nul", "\"abc", "\"\\u12\"", "\"\\x\"", "\"a\u0001\"",
+            "01", "1.", "-", "1e", "+1", ".5", "NaN", "{\"a\":1} x",
+    };
+
+    @Test
+    public void testSameAsJsonReader() throws IOException {
+        Object expected = JsonReader.read(new StringReader(DOCUMENT));
+        assertEquals(expected, read(DOCUMENT));
+        Map<?, ?> map = (Map<?, ?>) read(DOCUMENT);
+        assertEquals("x\u00e9\n\"\u00e9\u20ac\ud83d\ude00", ((List<?>) map.get("a")).get(6));
+    }
+
+    @Test
+    public void testMalformed() {
+        for (String json : MALFORMED) {
+            try {
+                read(json);
+                fail("Expected an error for " + json);
+            } catch (IOException e) {
+                // the position of the error is reported
+                assertTrue(e.getMessage(), e.getMessage().matches(".* at \\d+:\\d+"));
+            }
+        }
+    }
+
+    @Test
+    public void testErrorPosition() {
+        try {
+            read("{\n  \"a\": [1,\n  2,]\n}");
+            fail();
+        } catch (IOException e) {
+            assertEquals("Expected value at 3:5", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testOffset() throws IOException {
+        byte[] bytes = ("xx" + DOCUMENT + "yy").getBytes(StandardCharsets.UTF_8);
+        assertEquals(read(DOCUMENT), Utf8JsonReader.read(bytes, 2, bytes.length - 4));
+    }
+
+    @Test
+    public void testCachedNames() throws IOException {
+        for (int length : new int[] { 1, NameCache.MAX_LENGTH - 1, NameCache.MAX_LENGTH, NameCache.MAX_LENGTH + 1 }) {
+            char[] chars = new char[length];
+            Arrays.fill(chars, 'n');
+            String json = "{\"" + new String(chars) + "\": 1}";
+            Object first = ((Map<?, ?>) read(json)).keySet().iterator().next();
+            Object second = ((Map<?, ?>) read(json)).keySet().iterator().next();
+            Object third = ((Map<?, ?>) JsonReader.read(new StringReader(json))).keySet().iterator().next();
+            if (length <= NameCache.MAX_LENGTH) {
+                assertSame(first, second);
+                assertSame(first, third);
+            } else {
+                assertEquals(first, second);
+                assertNotSame(first, second);
+            }
+        }
+    }
+
+    @Test
+    public void testReadFully() throws IOException {
+        byte[] bytes = new byte[100000];
+        Arrays.fill(bytes, (byte) 'x');
+        for (int length : new int[] { -1, bytes.length }) {
+            ByteBuffer buffer = Utf8JsonReader.readFully(new ByteArrayInputStream(bytes), length, false);
+            assertEquals(bytes.length, buffer.remaining());
+        }
+    }
+
+    @Test
+    public void testAnnouncedLengthNotTrusted() throws IOException {
+        byte[] bytes = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = Utf8JsonReader.readFully(new ByteArrayInputStream(bytes), Integer.MAX_VALUE - 8, false);
+        assertEquals(bytes.length, buffer.remaining());
+        assertTrue(buffer.array().length <= Utf8JsonReader.MAX_POOLED_BUFFER_SIZE);
+    }
+
+    @Test
+    public void testPooledBuffers() throws IOException {
+        byte[] bytes = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer pooled = Utf8JsonReader.readFully(new ByteArrayInputStream(bytes), bytes.length, true);
+        assertSame(pooled.array(), Utf8JsonReader.readFully(new ByteArrayInputStream(bytes), bytes.length, true).array());
+        // the buffers which are not pooled can be kept by the caller
+        ByteBuffer owned = Utf8JsonReader.readFully(new ByteArrayInputStream(bytes), bytes.length, false);
+        assertNotSame(pooled.array(), owned.array());
+        assertNotSame(owned.array(), Utf8JsonReader.readFully(new ByteArrayInputStream(bytes), bytes.length, false).array());
+    }
+
+    private static Object read(String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return Utf8JsonReader.read(bytes, 0, bytes.length);
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core.support;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ActivationExecutorsTest {
+
+    @Test
+    public void testRejectedBeyondConcurrency() throws Exception {
+        ExecutorService delegate = Executors.newCachedThreadPool();
+        try {
+            ActivationExecutors.BoundedExecutor executor = new ActivationExecutors.BoundedExecutor(delegate, 1);
+            final CountDownLatch running = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final BlockingQueue<Boolean> rejected = new LinkedBlockingQueue<>();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    rejected.add(ActivationExecutors.isRejected());
+                    running.countDown();
+                    await(release);
+                }
+            });
+            running.await();
+            Runnable check = new Runnable() {
+                @Override
+                public void run() {
+                    rejected.add(ActivationExecutors.isRejected());
+                }
+            };
+            // the caller is not blocked while the first task runs
+            executor.execute(check);
+            assertEquals(Boolean.FALSE, rejected.poll(10, TimeUnit.SECONDS));
+            assertEquals(Boolean.TRUE, rejected.poll(10, TimeUnit.SECONDS));
+            release.countDown();
+
+            // the permit is released once the first task is done
+            boolean accepted = false;
+            for (int i = 0; i < 100 && !accepted; i++) {
+                executor.execute(check);
+                accepted = !rejected.poll(10, TimeUnit.SECONDS);
+            }
+            assertTrue(accepted);
+            assertFalse(ActivationExecutors.isRejected());
+        } finally {
+            delegate.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core.support;
+
+import java.io.Serializable;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.TypeConverterSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FastTypeConverterRegistryTest {
+
+    private DefaultCamelContext context;
+    private FastTypeConverterRegistry registry;
+    private CountingConverter counting;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new DefaultCamelContext();
+        registry = createRegistry();
+        registry.start();
+        // loads the converters, which changes the generation, before the conversions
+        assertNull(registry.lookup(Bar.class, Foo.class));
+        counting = new CountingConverter();
+        registry.addFallbackTypeConverter(counting, false);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.stop();
+    }
+
+    @Test
+    public void testMissInvalidatedByAddTypeConverter() {
+        assertNull(registry.convertTo(Bar.class, new Foo()));
+        assertNull(registry.convertTo(Bar.class, new Foo()));
+        // the second conversion is a remembered miss
+        assertEquals(1, counting.calls.get());
+
+        registry.addTypeConverter(Bar.class, Foo.class, new BarConverter());
+        assertTrue(registry.convertTo(Bar.class, new Foo()) instanceof Bar);
+    }
+
+    @Test
+    public void testMissInvalidatedByAddFallbackTypeConverter() {
+        assertNull(registry.convertTo(Bar.class, new Foo()));
+        assertNull(registry.convertTo(Bar.class, new Foo()));
+        assertEquals(1, counting.calls.get());
+
+        registry.addFallbackTypeConverter(new BarConverter(), false);
+        assertTrue(registry.convertTo(Bar.class, new Foo()) instanceof Bar);
+    }
+
+    @Test
+    public void testResolutionInvalidatedByAddTypeConverter() {
+        BarConverter first = new BarConverter();
+        registry.addTypeConverter(Bar.class, Foo.class, first);
+        registry.convertTo(Bar.class, new Foo());
+        assertEquals(1, first.calls.get());
+
+        // the resolved converter is replaced
+        BarConverter second = new BarConverter();
+        registry.addTypeConverter(Bar.class, Foo.class, second);
+        registry.convertTo(Bar.class, new Foo());
+        assertEquals(1, first.calls.get());
+        assertEquals(1, second.calls.get());
+    }
+
+    @Test
+    public void testMissesBounded() throws Exception {
+        // the same class loaded by different class loaders gives as many different from-types
+        URL location = Foo.class.getProtectionDomain().getCodeSource().getLocation();
+        List<URLClassLoader> loaders = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        try {
+            for (int i = 0; i <= FastTypeConverterRegistry.MAX_MISSES; i++) {
+                URLClassLoader loader = new URLClassLoader(new URL[] {location}, null);
+                loaders.add(loader);
+                values.add(loader.loadClass(Foo.class.getName()).newInstance());
+            }
+            for (Object value : values) {
+                assertNull(registry.convertTo(Bar.class, value));
+            }
+            assertEquals(FastTypeConverterRegistry.MAX_MISSES + 1, counting.calls.get());
+            // only the first misses are remembered
+            for (Object value : values) {
+                assertNull(registry.convertTo(Bar.class, value));
+            }
+            assertEquals(FastTypeConverterRegistry.MAX_MISSES + 2, counting.calls.get());
+        } finally {
+            for (URLClassLoader loader : loaders) {
+                loader.close();
+            }
+        }
+    }
+
+    @Test
+    public void testLazyTypeMappingEqualsSimpleTypeMapping() {
+        FastTypeConverterRegistry.TypeMapping lazy
+                = new FastTypeConverterRegistry.LazyTypeMapping(Integer.class.getName(), String.class.getName());
+        FastTypeConverterRegistry.TypeMapping simple
+                = new FastTypeConverterRegistry.SimpleTypeMapping(Integer.class, String.class);
+        assertEquals(lazy, simple);
+        assertEquals(simple, lazy);
+        assertEquals(lazy.hashCode(), simple.hashCode());
+
+        FastTypeConverterRegistry.TypeMapping reversed
+                = new FastTypeConverterRegistry.SimpleTypeMapping(String.class, Integer.class);
+        assertNotEquals(lazy, reversed);
+        assertNotEquals(reversed, lazy);
+        FastTypeConverterRegistry.TypeMapping withoutFromType
+                = new FastTypeConverterRegistry.SimpleTypeMapping(Integer.class, null);
+        assertNotEquals(lazy, withoutFromType);
+        assertNotEquals(withoutFromType, lazy);
+    }
+
+    @Test
+    public void testIndexedConverterFoundFromTypes() throws Exception {
+        // an indexed converter is registered with a lazy mapping, and looked up with a simple one
+        BarConverter converter = new BarConverter();
+        registry.typeMappings.put(new FastTypeConverterRegistry.LazyTypeMapping(Bar.class.getName(), Foo.class.getName()), converter);
+        assertEquals(converter, registry.getTypeConverter(Bar.class, Foo.class));
+
+        // an explicitly added converter replaces the indexed one
+        BarConverter added = new BarConverter();
+        registry.addTypeConverter(Bar.class, Foo.class, added);
+        assertEquals(added, registry.getTypeConverter(Bar.class, Foo.class));
+        assertEquals(1, registry.typeMappings.keySet().stream()
+                .filter(mapping -> Foo.class.getName().equals(mapping.getFromTypeName())).count());
+    }
+
+    @Test
+    public void testDerivedConverterChosenDeterministically() throws Exception {
+        BarConverter toNumber = new BarConverter();
+        BarConverter toInteger = new BarConverter();
+        BarConverter toString = new BarConverter();
+        BarConverter toStringBuilder = new BarConverter();
+        registry.addTypeConverter(Number.class, Foo.class, toNumber);
+        registry.addTypeConverter(Integer.class, Foo.class, toInteger);
+        registry.addTypeConverter(String.class, Foo.class, toString);
+        registry.addTypeConverter(StringBuilder.class, Foo.class, toStringBuilder);
+        // the same converters registered in the reverse order
+        FastTypeConverterRegistry reversed = createRegistry();
+        reversed.addTypeConverter(StringBuilder.class, Foo.class, toStringBuilder);
+        reversed.addTypeConverter(String.class, Foo.class, toString);
+        reversed.addTypeConverter(Integer.class, Foo.class, toInteger);
+        reversed.addTypeConverter(Number.class, Foo.class, toNumber);
+
+        for (FastTypeConverterRegistry converters : Arrays.asList(registry, reversed)) {
+            // the converter to the exact type
+            assertEquals(toNumber, converters.indexDerivedConverters(Number.class).get(Foo.class.getName()));
+            // then the one to the most specific type
+            assertEquals(toInteger, converters.indexDerivedConverters(Serializable.class).get(Foo.class.getName()));
+            // then the name of the type decides between unrelated types
+            assertEquals(toString, converters.indexDerivedConverters(CharSequence.class).get(Foo.class.getName()));
+        }
+    }
+
+    @Test
+    public void testStatisticsEnabledAtRuntime() {
+        registry.convertTo(Bar.class, new Foo());
+        assertEquals(0, registry.getStatistics().getAttemptCounter());
+
+        registry.getStatistics().setStatisticsEnabled(true);
+        registry.convertTo(Bar.class, new Foo());
+        assertEquals(1, registry.getStatistics().getMissCounter());
+        // the report is logged periodically from then on
+        boolean reporting = false;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            reporting |= "TypeConverterStatistics".equals(thread.getName());
+        }
+        assertEquals(FastTypeConverterRegistry.STATISTICS_INTERVAL > 0, reporting);
+    }
+
+    private FastTypeConverterRegistry createRegistry() {
+        return new FastTypeConverterRegistry(context, context.getPackageScanClassResolver(),
+                context.getInjector(), context.getDefaultFactoryFinder());
+    }
+
+    public static class Foo {
+    }
+
+    public static class Bar {
+    }
+
+    /**
+     * Converts any value to a {@link Bar}
+     */
+    private static final class BarConverter extends TypeConverterSupport {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public <T> T convertTo(Class<T> type, Exchange exchange, Object value) {
+            calls.incrementAndGet();
+            return type == Bar.class ? type.cast(new Bar()) : null;
+        }
+    }
+
+    /**
+     * A fallback converter which cannot convert anything, but counts the conversions it is asked to do
+     */
+    private static final class CountingConverter extends TypeConverterSupport {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public <T> T convertTo(Class<T> type, Exchange exchange, Object value) {
+            calls.incrementAndGet();
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core.support;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.apache.camel.impl.converter.OptimisedTypeConverter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class NumericTypeConverterTest {
+
+    private static final Object[] VALUES = {
+            "12", "-7", "0", "1.5", "300", "99999999999", "", "abc", "true", "FALSE", "yes",
+            12.0, -1.5, -0.5, 1e20,
+            7, -1, 0, 128, Integer.MAX_VALUE,
+            5L, -1L, Long.MAX_VALUE,
+            1.5f, (short) 3, (byte) -2,
+            new BigDecimal("12.75"), new BigInteger("123456789012345678901234567890"),
+            true, false, 'x',
+    };
+
+    private static final Class<?>[] TYPES = {
+            String.class, Object.class, Character.class, char.class,
+            Double.class, double.class, Integer.class, int.class, Long.class, long.class,
+            Boolean.class, boolean.class, Float.class, float.class, Short.class, short.class,
+            Byte.class, byte.class, BigDecimal.class, BigInteger.class,
+    };
+
+    /**
+     * Each conversion handled by the table must give the same result as the optimised converter,
+     * which it replaces, so that the registered converters still see the same conversions
+     */
+    @Test
+    public void testSameAsOptimisedConverter() throws Exception {
+        OptimisedTypeConverter optimised = new OptimisedTypeConverter();
+        int handled = 0;
+        for (Object value : VALUES) {
+            for (Class<?> type : TYPES) {
+                String pair = value.getClass().getSimpleName() + " " + value + " to " + type.getName();
+                Object result;
+                try {
+                    result = NumericTypeConverter.convertTo(type, value);
+                } catch (NumberFormatException e) {
+                    try {
+                        optimised.convertTo(type, null, value);
+                        fail("Expected an error for " + pair);
+                    } catch (NumberFormatException expected) {
+                        // same error
+                    }
+                    handled++;
+                    continue;
+                }
+                if (result != null) {
+                    Object expected = optimised.convertTo(type, null, value);
+                    assertNotNull("Not converted by the optimised converter: " + pair, expected);
+                    assertEquals(pair, expected, result);
+                    assertEquals(pair, expected.getClass(), result.getClass());
+                    handled++;
+                }
+            }
+        }
+        assertEquals(620, VALUES.length * TYPES.length);
+        assertEquals(332, handled);
+    }
+
+    @Test
+    public void testBooleans() {
+        assertEquals(Boolean.TRUE, NumericTypeConverter.convertTo(Boolean.class, 1));
+        assertEquals(Boolean.FALSE, NumericTypeConverter.convertTo(boolean.class, 0));
+        assertEquals(Boolean.FALSE, NumericTypeConverter.convertTo(Boolean.class, -1));
+        assertEquals(Boolean.TRUE, NumericTypeConverter.convertTo(Boolean.class, "True"));
+        assertEquals(Boolean.FALSE, NumericTypeConverter.convertTo(Boolean.class, "false"));
+        // left to the registry
+        assertNull(NumericTypeConverter.convertTo(Boolean.class, "yes"));
+        assertNull(NumericTypeConverter.convertTo(Boolean.class, 1L));
+        assertNull(NumericTypeConverter.convertTo(Boolean.class, 1.0));
+    }
+
+    @Test
+    public void testPairsLeftToTheRegistry() {
+        // the optimised converter does not handle them, so they may have registered converters
+        assertNull(NumericTypeConverter.convertTo(String.class, 1.5));
+        assertNull(NumericTypeConverter.convertTo(String.class, 12));
+        assertNull(NumericTypeConverter.convertTo(String.class, true));
+        assertNull(NumericTypeConverter.convertTo(BigInteger.class, "12"));
+        assertNull(NumericTypeConverter.convertTo(BigInteger.class, 12.0));
+        assertNull(NumericTypeConverter.convertTo(BigDecimal.class, 12));
+        assertNull(NumericTypeConverter.convertTo(Integer.class, true));
+        // time patterns such as 5s are parsed by a registered converter
+        assertNull(NumericTypeConverter.convertTo(long.class, "5"));
+    }
+
+    @Test
+    public void testNarrowing() {
+        assertEquals(Integer.valueOf(-1), NumericTypeConverter.convertTo(int.class, -1.5));
+        assertEquals(Byte.valueOf((byte) -128), NumericTypeConverter.convertTo(byte.class, 128));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), NumericTypeConverter.convertTo(Long.class, 1e20));
+        assertEquals(Integer.valueOf(new BigInteger("123456789012345678901234567890").intValue()),
+                NumericTypeConverter.convertTo(Integer.class, new BigInteger("123456789012345678901234567890")));
+        assertEquals(Double.valueOf(12.75), NumericTypeConverter.convertTo(Double.class, new BigDecimal("12.75")));
+    }
+
+}
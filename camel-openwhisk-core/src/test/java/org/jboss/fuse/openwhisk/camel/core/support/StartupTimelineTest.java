@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core.support;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StartupTimelineTest {
+
+    @Test
+    public void testRecordAndReset() {
+        StartupTimeline.reset();
+        StartupTimeline.record(StartupTimeline.DECODE, System.nanoTime() - 1500000);
+        StartupTimeline.record(StartupTimeline.DECODE, System.nanoTime() - 1500000);
+        StartupTimeline.record(StartupTimeline.INIT, System.nanoTime() - 250000);
+        assertTrue(StartupTimeline.get(StartupTimeline.DECODE) >= 3000000);
+
+        StartupTimeline.listening();
+        Map<String, Object> timeline = StartupTimeline.toMap();
+        assertEquals(Arrays.asList(StartupTimeline.JVM_TO_LISTEN, StartupTimeline.DECODE, StartupTimeline.INIT),
+                Arrays.asList(timeline.keySet().toArray()));
+        // all the phases in milliseconds with one decimal
+        for (Object duration : timeline.values()) {
+            assertEquals(Double.class, duration.getClass());
+            double tenths = (Double) duration * 10;
+            assertEquals(Math.rint(tenths), tenths, 1e-6);
+        }
+        assertTrue((Double) timeline.get(StartupTimeline.DECODE) >= 3.0);
+
+        // the next initialization records its own phases
+        StartupTimeline.reset();
+        assertEquals(0, StartupTimeline.get(StartupTimeline.DECODE));
+        assertEquals(Arrays.asList(StartupTimeline.JVM_TO_LISTEN), Arrays.asList(StartupTimeline.toMap().keySet().toArray()));
+    }
+
+}
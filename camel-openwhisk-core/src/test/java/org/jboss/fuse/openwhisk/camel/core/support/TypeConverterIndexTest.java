@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.fuse.openwhisk.camel.core.support;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.camel.Converter;
+import org.apache.camel.Exchange;
+import org.apache.camel.FallbackConverter;
+import org.apache.camel.spi.TypeConverterRegistry;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TypeConverterIndexTest {
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        Method toInteger = TestConverters.class.getMethod("toInteger", String.class);
+        Method toChars = TestConverters.class.getMethod("toChars", String.class, Exchange.class);
+        Method fallback = TestConverters.class.getMethod("convertTo", Class.class, Exchange.class, Object.class, TypeConverterRegistry.class);
+
+        TypeConverterIndex index = new TypeConverterIndex();
+        index.getPackages().add("org.example.converters");
+        index.getPackages().add(TestConverters.class.getName());
+        index.addConverter(Integer.class, String.class, toInteger);
+        index.addConverter(char[].class, String.class, toChars);
+        index.addFallback(fallback);
+
+        Path root = Files.createTempDirectory("index");
+        Path file = root.resolve(TypeConverterIndex.LOCATION);
+        try {
+            index.write(file);
+            TypeConverterIndex read = TypeConverterIndex.read(file.toUri().toURL());
+
+            assertEquals(new ArrayList<>(index.getPackages()), new ArrayList<>(read.getPackages()));
+            assertEquals(new ArrayList<>(index.getConverters()), new ArrayList<>(read.getConverters()));
+            assertEquals(new ArrayList<>(index.getFallbacks()), new ArrayList<>(read.getFallbacks()));
+
+            List<List<String>> converters = new ArrayList<>(read.getConverters());
+            assertEquals(Arrays.asList("java.lang.Integer", "java.lang.String", "false", TypeConverterIndex.signature(toInteger)),
+                    converters.get(0));
+            assertEquals(Arrays.asList("[C", "java.lang.String", "true", TypeConverterIndex.signature(toChars)),
+                    converters.get(1));
+            assertEquals(Arrays.asList("true", "false", TypeConverterIndex.signature(fallback)),
+                    read.getFallbacks().iterator().next());
+        } finally {
+            delete(root);
+        }
+    }
+
+    @Test
+    public void testLoadMethod() throws Exception {
+        for (Method method : TestConverters.class.getDeclaredMethods()) {
+            assertEquals(method, TypeConverterIndex.loadMethod(TypeConverterIndex.signature(method)));
+        }
+        assertEquals(int.class, TypeConverterIndex.loadClass("int"));
+        assertEquals(char[].class, TypeConverterIndex.loadClass("[C"));
+    }
+
+    private static void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Converter
+    public static final class TestConverters {
+
+        @Converter
+        public static Integer toInteger(String value) {
+            return Integer.valueOf(value);
+        }
+
+        @Converter(allowNull = true)
+        public static char[] toChars(String value, Exchange exchange) {
+            return value.toCharArray();
+        }
+
+        @FallbackConverter(canPromote = true)
+        public static <T> T convertTo(Class<T> type, Exchange exchange, Object value, TypeConverterRegistry registry) {
+            return null;
+        }
+
+    }
+
+}